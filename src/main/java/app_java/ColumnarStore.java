@@ -0,0 +1,276 @@
+package app_java;
+
+import java.math.BigDecimal;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
+
+// filas del inventario guardadas por columnas en arreglos primitivos en vez de un ArrayList<Producto>.
+// con un millon de productos la lista son millones de objetos (Producto, String, byte[]) que el GC tiene
+// que recorrer; aqui son unos cuantos arreglos y los nombres repetidos se guardan una vez en el StringPool.
+// los Producto solo se crean cuando alguien pide una fila con get()
+final class ColumnarStore {
+    private int[] ids;
+    private int[] cantidades;
+    private long[] centavos;
+    private int[] nombres; // numero del nombre en el pool
+    private long[] subtotales; // centavos * cantidad, calculado al escribir la fila
+    // BigDecimal que pide la tabla (Precio y Subtotal): se crean la primera vez que se pintan o se ordenan y
+    // se reutilizan hasta que cambia esa fila, asi hacer scroll u ordenar no crea objetos por celda
+    private BigDecimal[] preciosBd;
+    private BigDecimal[] subtotalesBd;
+    private final StringPool pool = new StringPool();
+    // orden en español de los nombres distintos del pool (no por fila): la clave del Collator de cada nombre
+    // se calcula una vez, la primera vez que se compara, y no cambia. con las claves se numeran los nombres en
+    // orden (rango) para comparar dos int en vez de dos claves. un nombre nuevo no renumera nada: se compara
+    // por su clave hasta que se juntan muchos nuevos y entonces se renumera todo de una vez
+    private final Collator collator = Collator.getInstance(Locale.forLanguageTag("es"));
+    private CollationKey[] clavesNombre = new CollationKey[0];
+    private int[] rangoNombre = new int[0];
+    private int rangosHasta; // los nombres del pool con numero menor tienen rango
+    private int size;
+
+    ColumnarStore() {
+        this(16);
+    }
+
+    ColumnarStore(int capacidad) {
+        int c = Math.max(capacidad, 4);
+        ids = new int[c];
+        cantidades = new int[c];
+        centavos = new long[c];
+        nombres = new int[c];
+        subtotales = new long[c];
+        preciosBd = new BigDecimal[c];
+        subtotalesBd = new BigDecimal[c];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // ======== Lectura por columna (sin crear objetos) ========
+
+    int id(int row) {
+        revisar(row);
+        return ids[row];
+    }
+
+    String nombre(int row) {
+        revisar(row);
+        return pool.get(nombres[row]);
+    }
+
+    int cantidad(int row) {
+        revisar(row);
+        return cantidades[row];
+    }
+
+    long centavos(int row) {
+        revisar(row);
+        return centavos[row];
+    }
+
+    long subtotalCentavos(int row) {
+        revisar(row);
+        return subtotales[row];
+    }
+
+    BigDecimal precio(int row) {
+        revisar(row);
+        BigDecimal b = preciosBd[row];
+        if (b == null)
+            preciosBd[row] = b = Producto.deCentavos(centavos[row]);
+        return b;
+    }
+
+    BigDecimal subtotal(int row) {
+        revisar(row);
+        BigDecimal b = subtotalesBd[row];
+        if (b == null)
+            subtotalesBd[row] = b = Producto.deCentavos(subtotales[row]);
+        return b;
+    }
+
+    // la fila como Producto (un objeto nuevo cada vez; cambiarlo no cambia el store)
+    Producto get(int row) {
+        revisar(row);
+        return new Producto(ids[row], pool.get(nombres[row]), cantidades[row], centavos[row]);
+    }
+
+    // ======== Orden por nombre ========
+
+    // compara dos nombres como en el diccionario ("Ñandu" despues de "Nuez", "árbol" junto a "arbol"). el
+    // sorter de la tabla le pasa los String que regresa getValueAt, que son los mismos del pool: se busca
+    // su numero y se comparan sus rangos (o sus claves si alguno es nuevo) sin pasar por el Collator
+    int compararNombres(String a, String b) {
+        int i = a == null ? -1 : pool.buscar(a);
+        int j = b == null ? -1 : pool.buscar(b);
+        if (i < 0 || j < 0) // no es de esta tabla (no deberia pasar)
+            return collator.compare(a == null ? "" : a, b == null ? "" : b);
+        if (i < rangosHasta && j < rangosHasta)
+            return Integer.compare(rangoNombre[i], rangoNombre[j]);
+        // los rangos siguen el orden de las claves, asi que mezclar las dos comparaciones da el mismo orden.
+        // renumerar es O(P log P): solo cuando los nuevos ya son una parte del pool (costo por nombre constante)
+        if (pool.size() - rangosHasta > Math.max(1024, rangosHasta >>> 4)) {
+            numerarNombres();
+            return Integer.compare(rangoNombre[i], rangoNombre[j]);
+        }
+        return i == j ? 0 : clave(i).compareTo(clave(j));
+    }
+
+    private void numerarNombres() {
+        int n = pool.size();
+        Integer[] orden = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            clave(i);
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (x, y) -> clavesNombre[x].compareTo(clavesNombre[y]));
+        rangoNombre = new int[n];
+        for (int k = 1; k < n; k++) { // nombres que el Collator considera iguales quedan con el mismo rango
+            boolean igual = clavesNombre[orden[k]].compareTo(clavesNombre[orden[k - 1]]) == 0;
+            rangoNombre[orden[k]] = igual ? rangoNombre[orden[k - 1]] : k;
+        }
+        rangosHasta = n;
+    }
+
+    private CollationKey clave(int i) {
+        if (i >= clavesNombre.length)
+            clavesNombre = Arrays.copyOf(clavesNombre, Math.max(pool.size(), clavesNombre.length * 2));
+        CollationKey k = clavesNombre[i];
+        if (k == null)
+            clavesNombre[i] = k = collator.getCollationKey(pool.get(i));
+        return k;
+    }
+
+    // ======== Escritura ========
+
+    void add(Producto p) {
+        if (size == ids.length)
+            crecer(size + 1);
+        escribir(size, p);
+        size++;
+    }
+
+    void set(int row, Producto p) {
+        revisar(row);
+        escribir(row, p);
+    }
+
+    void remove(int row) {
+        revisar(row);
+        int mover = size - row - 1;
+        if (mover > 0) {
+            System.arraycopy(ids, row + 1, ids, row, mover);
+            System.arraycopy(cantidades, row + 1, cantidades, row, mover);
+            System.arraycopy(centavos, row + 1, centavos, row, mover);
+            System.arraycopy(nombres, row + 1, nombres, row, mover);
+            System.arraycopy(subtotales, row + 1, subtotales, row, mover);
+            System.arraycopy(preciosBd, row + 1, preciosBd, row, mover);
+            System.arraycopy(subtotalesBd, row + 1, subtotalesBd, row, mover);
+        }
+        size--;
+        preciosBd[size] = null;
+        subtotalesBd[size] = null;
+    }
+
+    void clear() {
+        Arrays.fill(preciosBd, 0, size, null);
+        Arrays.fill(subtotalesBd, 0, size, null);
+        size = 0;
+        pool.clear();
+        clavesNombre = new CollationKey[0];
+        rangoNombre = new int[0];
+        rangosHasta = 0;
+    }
+
+    // reserva lugar para n filas de una vez (carga desde la base o el CSV)
+    void asegurarCapacidad(int n) {
+        if (n > ids.length)
+            crecer(n);
+    }
+
+    private void escribir(int row, Producto p) {
+        ids[row] = p.id;
+        cantidades[row] = p.cantidad;
+        centavos[row] = p.centavos;
+        nombres[row] = pool.intern(p.nombre);
+        subtotales[row] = p.subtotalCentavos();
+        preciosBd[row] = null; // cambio el precio o la cantidad: se vuelven a crear al pintarse
+        subtotalesBd[row] = null;
+    }
+
+    private void crecer(int minimo) {
+        int c = Math.max(minimo, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, c);
+        cantidades = Arrays.copyOf(cantidades, c);
+        centavos = Arrays.copyOf(centavos, c);
+        nombres = Arrays.copyOf(nombres, c);
+        subtotales = Arrays.copyOf(subtotales, c);
+        preciosBd = Arrays.copyOf(preciosBd, c);
+        subtotalesBd = Arrays.copyOf(subtotalesBd, c);
+    }
+
+    private void revisar(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Fila " + row + " fuera de rango (" + size + " filas)");
+    }
+
+    // copia de las filas actuales para una foto inmutable; los nombres se resuelven del pool (se comparten
+    // los String, no se copian)
+    InventarioSnapshot congelar(long version, long unidades, long totalCentavos) {
+        String[] ns = new String[size];
+        for (int i = 0; i < size; i++) {
+            ns[i] = pool.get(nombres[i]);
+        }
+        return new InventarioSnapshot(version, size, Arrays.copyOf(ids, size), ns, Arrays.copyOf(cantidades, size),
+                Arrays.copyOf(centavos, size), Arrays.copyOf(subtotales, size), unidades, totalCentavos);
+    }
+
+    // ======== Memoria ========
+    // estimaciones para una JVM de 64 bits con referencias comprimidas (lo normal con menos de 32 GB de heap):
+    // encabezado de objeto 12 bytes, referencias de 4, todo redondeado a multiplos de 8
+
+    record Memoria(int filas, int nombresUnicos, long bytesColumnas, long bytesLista) {
+        @Override
+        public String toString() {
+            return "Filas: " + filas + " (" + nombresUnicos + " nombres distintos)\n"
+                    + "Columnas primitivas: " + mb(bytesColumnas) + "\n"
+                    + "ArrayList<Producto>: " + mb(bytesLista) + "\n"
+                    + "Ahorro: " + (bytesLista == 0 ? 0 : 100 - bytesColumnas * 100 / bytesLista) + "%";
+        }
+
+        private static String mb(long b) {
+            return String.format("%.2f MB", b / (1024.0 * 1024.0));
+        }
+    }
+
+    // compara lo que ocupan estas filas aqui contra lo que ocuparian como ArrayList<Producto>
+    // (un Producto y un String por fila, sin compartir nombres)
+    Memoria memoria() {
+        long columnas = 7 * 16L + 3 * 4L * ids.length + 2 * 8L * ids.length + 2 * 4L * ids.length
+                + pool.bytesEstimados();
+        for (int i = 0; i < size; i++) { // BigDecimal en cache: 40 bytes cada uno
+            columnas += (preciosBd[i] != null ? 40 : 0) + (subtotalesBd[i] != null ? 40 : 0);
+        }
+        long lista = 16L + 24L + 4L * size; // ArrayList + su arreglo de referencias
+        for (int i = 0; i < size; i++) {
+            lista += 32 + bytesString(pool.get(nombres[i])); // Producto: 12 + id + nombre + cantidad + centavos
+        }
+        return new Memoria(size, pool.size(), columnas, lista);
+    }
+
+    // String (24) + su byte[] (16 + un byte por caracter latin-1 o dos si no, redondeado a 8)
+    static long bytesString(String s) {
+        int porCaracter = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                porCaracter = 2;
+                break;
+            }
+        }
+        return 24 + ((16L + (long) s.length() * porCaracter + 7) & ~7L);
+    }
+}
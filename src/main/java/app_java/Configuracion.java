@@ -0,0 +1,49 @@
+package app_java;
+
+import java.io.InputStream;
+import java.util.Properties;
+
+// lee las opciones de application.properties (el mismo archivo que usa spring) para las partes
+// de la app que no pasan por spring, como la base de datos y la interfaz.
+// una propiedad del sistema (-Dclave=valor) tiene prioridad sobre el archivo
+public final class Configuracion {
+    private static final Properties props = cargar();
+
+    private Configuracion() {
+    }
+
+    private static Properties cargar() {
+        Properties p = new Properties();
+        try (InputStream in = Configuracion.class.getResourceAsStream("/application.properties")) {
+            if (in != null) {
+                p.load(in);
+            }
+        } catch (Exception e) { // si no se puede leer seguimos con los valores por defecto
+            System.out.println("No se pudo leer application.properties: " + e.getMessage());
+        }
+        return p;
+    }
+
+    public static String texto(String clave, String porDefecto) {
+        String valor = System.getProperty(clave, props.getProperty(clave));
+        return (valor == null || valor.isBlank()) ? porDefecto : valor.trim();
+    }
+
+    public static int entero(String clave, int porDefecto) {
+        try {
+            return Integer.parseInt(texto(clave, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            System.out.println("Valor invalido para " + clave + ", se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+
+    public static long largo(String clave, long porDefecto) {
+        try {
+            return Long.parseLong(texto(clave, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            System.out.println("Valor invalido para " + clave + ", se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package app_java;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// pool de conexiones para sqlite. abrir el archivo en cada consulta es lo que mas tarda (leer el esquema,
+// preparar la conexion), asi que las conexiones se abren una vez y se reutilizan.
+// sqlite solo permite un escritor a la vez, por eso hay una sola conexion de escritura protegida con un
+// candado y un grupo de conexiones de lectura que se prestan desde una cola
+public final class ConnectionPool {
+    private static volatile ConnectionPool instancia;
+
+    // se crea la primera vez que se usa con la configuracion de application.properties
+    public static ConnectionPool get() {
+        ConnectionPool p = instancia;
+        if (p == null) {
+            synchronized (ConnectionPool.class) {
+                p = instancia;
+                if (p == null) {
+                    p = new ConnectionPool(
+                            Configuracion.texto("inventario.db.url", "jdbc:sqlite:inventario.db"),
+                            Configuracion.entero("inventario.db.pool.lectores", 4),
+                            Configuracion.largo("inventario.db.pool.espera-ms", 5_000),
+                            Configuracion.largo("inventario.db.pool.validacion-ms", 30_000),
+                            StorageProfile.configurado());
+                    instancia = p;
+                    final ConnectionPool cerrar = p;
+                    // el unico gancho de salida: primero lo registrado en antesDeCerrar y luego las conexiones
+                    Runtime.getRuntime().addShutdownHook(new Thread(cerrar::cerrar, "cerrar-pool-sqlite"));
+                }
+            }
+        }
+        return p;
+    }
+
+    // conexion real + cuando se uso por ultima vez (para saber si hay que revisarla antes de prestarla)
+    private static final class Conexion {
+        final Connection conn;
+        long ultimoUso = System.nanoTime();
+        int versionPerfil = -1; // que version del perfil de almacenamiento tiene aplicada
+
+        Conexion(Connection conn) {
+            this.conn = conn;
+        }
+    }
+
+    private final String url;
+    private final int maxLectores;
+    private final long esperaMs;
+    private final long validacionNanos;
+
+    private final ReentrantLock candadoEscritura = new ReentrantLock(true); // fair: los escritores esperan en orden
+    private Conexion escritor; // protegido por candadoEscritura
+    private final BlockingQueue<Conexion> lectoresLibres;
+    private final AtomicInteger lectoresAbiertos = new AtomicInteger();
+    private volatile boolean cerrado;
+    // mientras una escritura larga tiene la conexion (una migracion en segundo plano, reemplazar todo desde un
+    // CSV) los escritores esperan sin limite de tiempo: tarda mas que esperaMs y no es que algo este trabado
+    private final AtomicInteger escriturasLargas = new AtomicInteger();
+    // lo que tiene que terminar de escribir antes de cerrar las conexiones (ej. WriteBehindQueue)
+    private final List<Runnable> antesDeCerrar = new CopyOnWriteArrayList<>();
+
+    // perfil de almacenamiento: al cambiarlo sube la version y cada conexion lo aplica la siguiente vez que
+    // se presta (no se puede tocar una conexion que otro hilo esta usando)
+    private final StorageProfile perfilBase;
+    private volatile StorageProfile perfil;
+    private final AtomicInteger versionPerfil = new AtomicInteger();
+
+    // metricas del pool
+    private final AtomicLong prestamosEscritura = new AtomicLong();
+    private final AtomicLong prestamosLectura = new AtomicLong();
+    private final AtomicLong esperaEscrituraNanos = new AtomicLong();
+    private final AtomicLong esperaLecturaNanos = new AtomicLong();
+    private final AtomicLong conexionesCreadas = new AtomicLong();
+    private final AtomicLong conexionesReemplazadas = new AtomicLong();
+    private final AtomicInteger lectoresEnUso = new AtomicInteger();
+
+    ConnectionPool(String url, int maxLectores, long esperaMs, long validacionMs, StorageProfile perfil) {
+        this.url = url;
+        this.maxLectores = Math.max(1, maxLectores);
+        this.esperaMs = esperaMs;
+        this.validacionNanos = TimeUnit.MILLISECONDS.toNanos(validacionMs);
+        this.lectoresLibres = new ArrayBlockingQueue<>(this.maxLectores);
+        this.perfilBase = perfil;
+        this.perfil = perfil;
+    }
+
+    // ======== Prestamos ========
+
+    // presta la unica conexion de escritura; el hilo que la tiene puede volver a pedirla (candado reentrante)
+    public Prestamo escritura() throws SQLException {
+        revisarAbierto();
+        long inicio = System.nanoTime();
+        try {
+            while (!candadoEscritura.tryLock(esperaMs, TimeUnit.MILLISECONDS)) {
+                if (escriturasLargas.get() == 0)
+                    throw new SQLException("Tiempo agotado esperando la conexion de escritura (" + esperaMs + " ms)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando la conexion de escritura", e);
+        }
+        esperaEscrituraNanos.addAndGet(System.nanoTime() - inicio);
+        prestamosEscritura.incrementAndGet();
+        try {
+            if (candadoEscritura.getHoldCount() == 1) { // solo se revisa en el prestamo exterior
+                escritor = revisar(escritor);
+            }
+            return new Prestamo(escritor, true);
+        } catch (SQLException | RuntimeException e) {
+            candadoEscritura.unlock();
+            throw e;
+        }
+    }
+
+    // presta una conexion de lectura; si no hay libres y no se llego al maximo abre otra
+    public Prestamo lectura() throws SQLException {
+        revisarAbierto();
+        long inicio = System.nanoTime();
+        Conexion c = lectoresLibres.poll();
+        if (c == null) {
+            if (lectoresAbiertos.incrementAndGet() <= maxLectores) {
+                try {
+                    c = abrir();
+                } catch (SQLException e) {
+                    lectoresAbiertos.decrementAndGet();
+                    throw e;
+                }
+            } else {
+                lectoresAbiertos.decrementAndGet();
+                try {
+                    c = lectoresLibres.poll(esperaMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrumpido esperando una conexion de lectura", e);
+                }
+                if (c == null) {
+                    throw new SQLException("Tiempo agotado esperando una conexion de lectura (" + esperaMs + " ms)");
+                }
+            }
+        }
+        esperaLecturaNanos.addAndGet(System.nanoTime() - inicio);
+        prestamosLectura.incrementAndGet();
+        try {
+            c = revisar(c);
+        } catch (SQLException e) {
+            lectoresAbiertos.decrementAndGet();
+            throw e;
+        }
+        lectoresEnUso.incrementAndGet();
+        return new Prestamo(c, false);
+    }
+
+    // conexion prestada; al cerrarla regresa al pool en vez de cerrarse de verdad
+    public final class Prestamo implements AutoCloseable {
+        private final Conexion c;
+        private final boolean escritura;
+        private boolean devuelto;
+
+        private Prestamo(Conexion c, boolean escritura) {
+            this.c = c;
+            this.escritura = escritura;
+        }
+
+        public Connection conn() {
+            if (devuelto)
+                throw new IllegalStateException("La conexion ya fue devuelta al pool");
+            return c.conn;
+        }
+
+        @Override
+        public void close() {
+            if (devuelto)
+                return;
+            devuelto = true;
+            if (escritura) {
+                try {
+                    if (candadoEscritura.getHoldCount() == 1) {
+                        limpiar(c);
+                    }
+                } finally {
+                    candadoEscritura.unlock();
+                }
+            } else {
+                lectoresEnUso.decrementAndGet();
+                if (limpiar(c) && !cerrado && lectoresLibres.offer(c)) {
+                    return;
+                }
+                lectoresAbiertos.decrementAndGet();
+                cerrarSilencioso(c);
+            }
+        }
+    }
+
+    // lo marcan Migraciones (en segundo plano) y CsvImporter (al reemplazar todo) mientras tienen la conexion
+    // de escritura por mucho tiempo (ver escritura). cada true lleva su false en un finally
+    void escrituraLarga(boolean enCurso) {
+        if (enCurso)
+            escriturasLargas.incrementAndGet();
+        else
+            escriturasLargas.decrementAndGet();
+    }
+
+    // ======== Salud de las conexiones ========
+
+    // si la conexion no existe, esta cerrada o lleva mucho sin usarse y ya no responde, se reemplaza
+    private Conexion revisar(Conexion c) throws SQLException {
+        if (c != null) {
+            try {
+                boolean viejo = System.nanoTime() - c.ultimoUso > validacionNanos;
+                if (!c.conn.isClosed() && (!viejo || c.conn.isValid(2))) {
+                    c.ultimoUso = System.nanoTime();
+                    aplicarPerfil(c);
+                    return c;
+                }
+            } catch (SQLException e) {
+                System.out.println("Conexion con fallas, se reemplaza: " + e.getMessage());
+            }
+            cerrarSilencioso(c);
+            conexionesReemplazadas.incrementAndGet();
+        }
+        return abrir();
+    }
+
+    // deja la conexion como nueva para el siguiente que la pida: si alguien dejo una transaccion abierta
+    // se deshace. regresa false si la conexion ya no sirve
+    private boolean limpiar(Conexion c) {
+        try {
+            if (c.conn.isClosed())
+                return false;
+            if (!c.conn.getAutoCommit()) {
+                c.conn.rollback();
+                c.conn.setAutoCommit(true);
+            }
+            c.ultimoUso = System.nanoTime();
+            return true;
+        } catch (SQLException e) {
+            System.out.println("No se pudo limpiar la conexion: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Conexion abrir() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement st = conn.createStatement()) {
+            // si otra conexion tiene el archivo bloqueado esperamos un poco en vez de fallar de inmediato
+            st.execute("PRAGMA busy_timeout = " + esperaMs);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        conexionesCreadas.incrementAndGet();
+        Conexion c = new Conexion(conn);
+        try {
+            aplicarPerfil(c);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return c;
+    }
+
+    private void aplicarPerfil(Conexion c) throws SQLException {
+        int v = versionPerfil.get();
+        if (c.versionPerfil != v) {
+            perfil.aplicar(c.conn);
+            c.versionPerfil = v;
+        }
+    }
+
+    // ======== Perfil de almacenamiento ========
+
+    public StorageProfile perfil() {
+        return perfil;
+    }
+
+    // cambia el perfil de todas las conexiones (cada una lo toma en su siguiente prestamo)
+    public synchronized void cambiarPerfil(StorageProfile nuevo) {
+        if (nuevo != perfil) {
+            perfil = nuevo;
+            versionPerfil.incrementAndGet();
+            System.out.println("Perfil de almacenamiento: " + nuevo);
+        }
+    }
+
+    // cambia el perfil hasta que se cierra y al cerrar regresa al configurado:
+    // var perfil = ConnectionPool.get().perfilTemporal(StorageProfile.BULK_LOAD);
+    // try { ... } finally { perfil.close(); }
+    public PerfilTemporal perfilTemporal(StorageProfile temporal) {
+        cambiarPerfil(temporal);
+        return () -> cambiarPerfil(perfilBase);
+    }
+
+    @FunctionalInterface
+    public interface PerfilTemporal extends AutoCloseable {
+        @Override
+        void close(); // sin excepciones para usarlo comodo en try-with-resources
+    }
+
+    private static void cerrarSilencioso(Conexion c) {
+        try {
+            c.conn.close();
+        } catch (SQLException ignore) {
+        }
+    }
+
+    private void revisarAbierto() throws SQLException {
+        if (cerrado)
+            throw new SQLException("El pool de conexiones esta cerrado");
+    }
+
+    // se ejecuta al cerrar, antes de soltar las conexiones (en el orden en que se registraron)
+    public void antesDeCerrar(Runnable tarea) {
+        antesDeCerrar.add(tarea);
+    }
+
+    // cierra todas las conexiones (se llama al salir de la aplicacion)
+    public void cerrar() {
+        for (Runnable tarea : antesDeCerrar) {
+            try {
+                tarea.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println("Cerrando pool de sqlite:\n" + metricas());
+        cerrado = true;
+        Conexion c;
+        while ((c = lectoresLibres.poll()) != null) {
+            cerrarSilencioso(c);
+        }
+        if (candadoEscritura.tryLock()) {
+            try {
+                if (escritor != null)
+                    cerrarSilencioso(escritor);
+                escritor = null;
+            } finally {
+                candadoEscritura.unlock();
+            }
+        }
+    }
+
+    // ======== Metricas ========
+
+    public record Metricas(StorageProfile perfil, int lectoresAbiertos, int lectoresEnUso, int lectoresLibres, int maxLectores,
+            long prestamosEscritura, long prestamosLectura, double esperaEscrituraMsProm, double esperaLecturaMsProm,
+            long conexionesCreadas, long conexionesReemplazadas) {
+        @Override
+        public String toString() {
+            return String.format("Perfil: %s%nLectores: %d abiertos de %d (%d en uso, %d libres)%n"
+                    + "Prestamos: %d de escritura (espera %.3f ms prom), %d de lectura (espera %.3f ms prom)%n"
+                    + "Conexiones creadas: %d (%d reemplazadas)", perfil, lectoresAbiertos, maxLectores,
+                    lectoresEnUso, lectoresLibres, prestamosEscritura, esperaEscrituraMsProm, prestamosLectura,
+                    esperaLecturaMsProm, conexionesCreadas, conexionesReemplazadas);
+        }
+    }
+
+    public Metricas metricas() {
+        long pe = prestamosEscritura.get(), pl = prestamosLectura.get();
+        return new Metricas(
+                perfil, lectoresAbiertos.get(), lectoresEnUso.get(), lectoresLibres.size(), maxLectores,
+                pe, pl,
+                pe == 0 ? 0 : esperaEscrituraNanos.get() / 1e6 / pe,
+                pl == 0 ? 0 : esperaLecturaNanos.get() / 1e6 / pl,
+                conexionesCreadas.get(), conexionesReemplazadas.get());
+    }
+}
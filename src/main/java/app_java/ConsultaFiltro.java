@@ -0,0 +1,370 @@
+package app_java;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// lenguaje de filtro de la caja de busqueda. cada termino separado por espacios debe cumplirse (AND):
+//   tornillo              el nombre contiene "tornillo" (igual que antes)
+//   nombre:"llave 3/8"    el nombre contiene el texto entre comillas
+//   cantidad<5            tambien <=, >, >=, = y != ; cant es lo mismo que cantidad
+//   precio>=100           en pesos (acepta decimales); subtotal igual
+//   id=25  id:25          por ID
+// los terminos numericos de un mismo campo se juntan en un rango [min, max] y se compilan a comparaciones
+// de long sobre las columnas de la foto (sin BigDecimal ni objetos por fila). la misma consulta se puede
+// convertir a SQL para la tabla virtual del catalogo
+final class ConsultaFiltro {
+
+    enum Campo {
+        ID("ID"), CANTIDAD("CANTIDAD"), PRECIO("PRECIO_CENTAVOS"), SUBTOTAL("CANTIDAD * PRECIO_CENTAVOS");
+
+        final String sql;
+
+        Campo(String sql) {
+            this.sql = sql;
+        }
+
+        long valor(InventarioSnapshot s, int i) {
+            return switch (this) {
+                case ID -> s.id(i);
+                case CANTIDAD -> s.cantidad(i);
+                case PRECIO -> s.centavos(i);
+                case SUBTOTAL -> s.subtotalCentavos(i);
+            };
+        }
+
+        boolean dinero() {
+            return this == PRECIO || this == SUBTOTAL;
+        }
+    }
+
+    @FunctionalInterface
+    interface Predicado {
+        boolean prueba(InventarioSnapshot s, int fila);
+    }
+
+    private static final int MAX_CACHE = 64;
+    // consultas ya compiladas por texto normalizado (se pide una por cada busqueda mientras se escribe)
+    private static final Map<String, ConsultaFiltro> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConsultaFiltro> e) {
+            return size() > MAX_CACHE;
+        }
+    };
+
+    private final long[] min = new long[Campo.values().length];
+    private final long[] max = new long[Campo.values().length];
+    private final List<long[]> distintos = new ArrayList<>(); // {campo, valor} de los !=
+    private final List<String> textos = new ArrayList<>(); // lo que debe contener el nombre
+    private Predicado[] predicados;
+    private String normalizada;
+
+    private ConsultaFiltro() {
+        Arrays.fill(min, Long.MIN_VALUE);
+        Arrays.fill(max, Long.MAX_VALUE);
+    }
+
+    // compila el texto (o lo toma del cache); IllegalArgumentException si no se entiende
+    static ConsultaFiltro compilar(String texto) {
+        var c = new ConsultaFiltro();
+        new Lector(texto).leer(c);
+        c.normalizar();
+        synchronized (CACHE) {
+            var previa = CACHE.get(c.normalizada);
+            if (previa != null)
+                return previa;
+            c.predicados = c.construirPredicados();
+            CACHE.put(c.normalizada, c);
+            return c;
+        }
+    }
+
+    boolean vacia() {
+        return normalizada.isEmpty();
+    }
+
+    // el texto buscado en el nombre si la consulta no tiene nada mas (para buscar parecidos cuando no hay
+    // coincidencias exactas); null si tiene terminos numericos o no tiene texto
+    String soloTexto() {
+        if (textos.isEmpty() || !distintos.isEmpty())
+            return null;
+        for (int c = 0; c < min.length; c++) {
+            if (min[c] != Long.MIN_VALUE || max[c] != Long.MAX_VALUE)
+                return null;
+        }
+        return String.join(" ", textos);
+    }
+
+    // forma canonica: campos en orden fijo, rangos ya juntados, textos en minusculas y ordenados.
+    // "precio>=100 cantidad<5" y "cant<=4  precio>=100.00" dan la misma
+    String normalizada() {
+        return normalizada;
+    }
+
+    boolean coincide(InventarioSnapshot s, int fila) {
+        for (Predicado p : predicados) {
+            if (!p.prueba(s, fila))
+                return false;
+        }
+        return true;
+    }
+
+    // true si todo lo que cumple esta consulta tambien cumple la otra (esta es igual o mas estricta):
+    // entonces basta revisar las filas que ya coincidian con la otra
+    boolean implica(ConsultaFiltro otra) {
+        for (int c = 0; c < min.length; c++) {
+            if (min[c] < otra.min[c] || max[c] > otra.max[c])
+                return false;
+        }
+        for (long[] d : otra.distintos) {
+            boolean tiene = false;
+            for (long[] e : distintos)
+                tiene |= e[0] == d[0] && e[1] == d[1];
+            if (!tiene && min[(int) d[0]] <= d[1] && d[1] <= max[(int) d[0]])
+                return false;
+        }
+        for (String t : otra.textos) {
+            boolean cubierto = false;
+            for (String u : textos)
+                cubierto |= u.contains(t);
+            if (!cubierto)
+                return false;
+        }
+        return true;
+    }
+
+    // la consulta como condicion SQL. el nombre se busca en el indice de texto completo (palabras que
+    // empiezan con el texto) porque un LIKE '%texto%' tendria que leer la tabla completa
+    Database.Condicion aSql() {
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        for (Campo c : Campo.values()) {
+            int i = c.ordinal();
+            if (min[i] != Long.MIN_VALUE) {
+                y(sql).append(c.sql).append(" >= ?");
+                params.add(min[i]);
+            }
+            if (max[i] != Long.MAX_VALUE) {
+                y(sql).append(c.sql).append(" <= ?");
+                params.add(max[i]);
+            }
+        }
+        for (long[] d : distintos) {
+            y(sql).append(Campo.values()[(int) d[0]].sql).append(" <> ?");
+            params.add(d[1]);
+        }
+        if (!textos.isEmpty()) {
+            var fts = Database.Condicion.texto(String.join(" ", textos));
+            if (!fts.parametros().isEmpty()) {
+                y(sql).append(fts.sql());
+                params.addAll(fts.parametros());
+            }
+        }
+        return sql.length() == 0 ? Database.Condicion.NINGUNA : new Database.Condicion(sql.toString(), params);
+    }
+
+    private static StringBuilder y(StringBuilder sql) {
+        return sql.length() == 0 ? sql : sql.append(" AND ");
+    }
+
+    // ======== Compilacion ========
+
+    private static final BigDecimal LIMITE = BigDecimal.TEN.pow(18);
+    private static final BigDecimal MINIMO = BigDecimal.ONE.movePointLeft(18);
+
+    void rango(Campo c, String op, String valor) {
+        BigDecimal v;
+        try {
+            v = new BigDecimal(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Se esperaba un numero despues de " + nombre(c) + op + ": " + valor);
+        }
+        if (c.dinero())
+            v = v.movePointRight(2); // pesos a centavos
+        // fuera de este rango longValueExact fallaria (o setScale armaria un numero gigante con "1e900000000");
+        // con 10^18 ademas sobra espacio para el +1/-1 de abajo sin desbordar
+        if (v.abs().compareTo(LIMITE) > 0)
+            throw new IllegalArgumentException("Numero fuera de rango despues de " + nombre(c) + op + ": " + valor);
+        // con decimales que no caben en el campo se redondea hacia el lado correcto de la comparacion
+        long abajo, arriba;
+        if (v.signum() != 0 && v.abs().compareTo(MINIMO) < 0) {
+            // casi cero ("1e-900000000"): setScale tendria que calcular 10^900000000
+            abajo = v.signum() < 0 ? -1 : 0;
+            arriba = v.signum() > 0 ? 1 : 0;
+        } else {
+            abajo = v.setScale(0, RoundingMode.FLOOR).longValueExact();
+            arriba = v.setScale(0, RoundingMode.CEILING).longValueExact();
+        }
+        int i = c.ordinal();
+        switch (op) {
+            case "<" -> max[i] = Math.min(max[i], arriba - 1);
+            case "<=" -> max[i] = Math.min(max[i], abajo);
+            case ">" -> min[i] = Math.max(min[i], abajo + 1);
+            case ">=" -> min[i] = Math.max(min[i], arriba);
+            case "=", ":" -> {
+                min[i] = Math.max(min[i], arriba);
+                max[i] = Math.min(max[i], abajo); // sin valor entero posible queda min > max: nada coincide
+            }
+            case "!=" -> {
+                if (abajo == arriba)
+                    distintos.add(new long[] { i, abajo });
+            }
+            default -> throw new IllegalArgumentException("Operador desconocido: " + op);
+        }
+    }
+
+    void texto(String t) {
+        if (!t.isEmpty())
+            textos.add(t.toLowerCase(Locale.ROOT));
+    }
+
+    private void normalizar() {
+        textos.sort(null);
+        distintos.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        StringBuilder sb = new StringBuilder();
+        for (Campo c : Campo.values()) {
+            int i = c.ordinal();
+            if (min[i] != Long.MIN_VALUE)
+                sb.append(nombre(c)).append(">=").append(min[i]).append(' ');
+            if (max[i] != Long.MAX_VALUE)
+                sb.append(nombre(c)).append("<=").append(max[i]).append(' ');
+        }
+        for (long[] d : distintos)
+            sb.append(nombre(Campo.values()[(int) d[0]])).append("!=").append(d[1]).append(' ');
+        for (String t : textos)
+            sb.append("nombre:\"").append(t).append("\" ");
+        normalizada = sb.toString().trim();
+    }
+
+    // primero las comparaciones de numeros (baratas) y al final las de texto
+    private Predicado[] construirPredicados() {
+        List<Predicado> ps = new ArrayList<>();
+        for (Campo c : Campo.values()) {
+            long lo = min[c.ordinal()], hi = max[c.ordinal()];
+            if (lo > hi)
+                return new Predicado[] { (s, i) -> false };
+            if (lo == Long.MIN_VALUE && hi == Long.MAX_VALUE)
+                continue;
+            ps.add(switch (c) { // un lambda por columna para que cada uno lea su arreglo directo
+                case ID -> (s, i) -> s.id(i) >= lo && s.id(i) <= hi;
+                case CANTIDAD -> (s, i) -> s.cantidad(i) >= lo && s.cantidad(i) <= hi;
+                case PRECIO -> (s, i) -> s.centavos(i) >= lo && s.centavos(i) <= hi;
+                case SUBTOTAL -> (s, i) -> s.subtotalCentavos(i) >= lo && s.subtotalCentavos(i) <= hi;
+            });
+        }
+        for (long[] d : distintos) {
+            Campo c = Campo.values()[(int) d[0]];
+            long v = d[1];
+            ps.add((s, i) -> c.valor(s, i) != v);
+        }
+        for (String t : textos)
+            ps.add((s, i) -> FiltroTabla.contieneSinMayusculas(s.nombre(i), t));
+        return ps.toArray(new Predicado[0]);
+    }
+
+    private static String nombre(Campo c) {
+        return c.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static Campo campo(String palabra) {
+        return switch (palabra.toLowerCase(Locale.ROOT)) {
+            case "id" -> Campo.ID;
+            case "cantidad", "cant" -> Campo.CANTIDAD;
+            case "precio" -> Campo.PRECIO;
+            case "subtotal" -> Campo.SUBTOTAL;
+            default -> null;
+        };
+    }
+
+    // ======== Lectura del texto ========
+
+    private static final class Lector {
+        private final String s;
+        private int pos;
+
+        Lector(String s) {
+            this.s = s == null ? "" : s;
+        }
+
+        void leer(ConsultaFiltro c) {
+            while (true) {
+                saltarEspacios();
+                if (pos >= s.length())
+                    return;
+                int inicio = pos;
+                if (s.charAt(pos) == '"') {
+                    c.texto(entreComillas());
+                    continue;
+                }
+                String palabra = letras();
+                saltarEspacios();
+                String op = palabra.isEmpty() ? "" : operador();
+                if (op.isEmpty()) { // palabra suelta: se busca en el nombre
+                    pos = inicio;
+                    c.texto(hastaEspacio());
+                    continue;
+                }
+                saltarEspacios();
+                String valor = pos < s.length() && s.charAt(pos) == '"' ? entreComillas() : hastaEspacio();
+                if (palabra.equalsIgnoreCase("nombre")) {
+                    if (!op.equals(":") && !op.equals("="))
+                        throw new IllegalArgumentException("Para nombre solo se usa nombre:texto");
+                    c.texto(valor);
+                } else {
+                    Campo campo = campo(palabra);
+                    if (campo == null) { // no es un campo: era texto con simbolos, ej. "3/8<"
+                        pos = inicio;
+                        c.texto(hastaEspacio());
+                        continue;
+                    }
+                    if (valor.isEmpty())
+                        throw new IllegalArgumentException("Falta el valor despues de " + palabra + op);
+                    c.rango(campo, op, valor);
+                }
+            }
+        }
+
+        private void saltarEspacios() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+                pos++;
+        }
+
+        private String letras() {
+            int inicio = pos;
+            while (pos < s.length() && Character.isLetter(s.charAt(pos)))
+                pos++;
+            return s.substring(inicio, pos);
+        }
+
+        private String operador() {
+            for (String op : new String[] { "<=", ">=", "!=", "<", ">", "=", ":" }) {
+                if (s.startsWith(op, pos)) {
+                    pos += op.length();
+                    return op;
+                }
+            }
+            return "";
+        }
+
+        private String hastaEspacio() {
+            int inicio = pos;
+            while (pos < s.length() && !Character.isWhitespace(s.charAt(pos)))
+                pos++;
+            return s.substring(inicio, pos);
+        }
+
+        private String entreComillas() {
+            int fin = s.indexOf('"', pos + 1);
+            if (fin < 0)
+                throw new IllegalArgumentException("Falta cerrar las comillas");
+            String t = s.substring(pos + 1, fin);
+            pos = fin + 1;
+            return t;
+        }
+    }
+}
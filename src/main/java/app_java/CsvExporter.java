@@ -0,0 +1,290 @@
+package app_java;
+
+import java.awt.BorderLayout;
+import java.awt.Window;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+import javax.swing.border.EmptyBorder;
+
+// guarda el inventario en CSV (id,nombre,cantidad,precio) en otro hilo, sin trabar la ventana:
+// - se escribe una foto inmutable del modelo (InventarioSnapshot): editar mientras se guarda no afecta el archivo
+// - cada fila se arma directo en bytes UTF-8 en un byte[] que se reutiliza (sin printf ni Strings por fila);
+//   el nombre se revisa y se escapa en la misma pasada
+// - el buffer se escribe con un FileChannel en bloques de 1 MB
+// - antes del archivo se sincroniza SQLite con la misma foto (en este mismo hilo); si eso falla no se escribe
+//   el archivo, asi la base y el CSV nunca quedan distintos
+// - se escribe a un archivo temporal con nombre unico que al final reemplaza al destino: si se cancela o falla,
+//   el archivo anterior queda igual
+// lo usan UiGeneral y UiInventario
+final class CsvExporter extends SwingWorker<CsvExporter.Resultado, Void> {
+    private static final int BUFFER = 1 << 20;
+    private static final byte[] ENCABEZADO = "id,nombre,cantidad,precio".getBytes();
+    private static final byte[] SALTO = System.lineSeparator().getBytes(); // como println/%n de antes
+
+    // sincronizado: lo que se escribio en la base antes del archivo (null si no se llego a escribir)
+    record Resultado(int filas, long bytes, boolean cancelado, String error, long ms,
+            SyncEngine.Resultado sincronizado) {
+        @Override
+        public String toString() {
+            return filas + " filas en " + ms + " ms";
+        }
+    }
+
+    private final InventarioSnapshot foto;
+    private final Callable<SyncEngine.Resultado> sincronizar;
+    private volatile SyncEngine.Resultado sincronizado;
+    private final Path destino;
+    private final Consumer<Resultado> alTerminar;
+    private final JDialog dialogo;
+    private final JProgressBar barra = new JProgressBar(0, 100);
+    private final long inicio = System.nanoTime();
+    private volatile boolean cancelar;
+
+    private byte[] buf = new byte[BUFFER];
+    private int n; // bytes usados de buf
+    private long escritos;
+
+    private CsvExporter(Window padre, File destino, InventarioSnapshot foto, Callable<SyncEngine.Resultado> sincronizar,
+            Consumer<Resultado> alTerminar) {
+        this.foto = foto;
+        this.sincronizar = sincronizar;
+        this.destino = destino.toPath();
+        this.alTerminar = alTerminar;
+        // no es modal: se puede seguir usando la ventana mientras se guarda
+        dialogo = new JDialog(padre, "Guardando " + destino.getName(), JDialog.ModalityType.MODELESS);
+        var btnCancelar = new JButton("Cancelar");
+        btnCancelar.addActionListener(e -> {
+            cancelar = true;
+            btnCancelar.setEnabled(false);
+        });
+        var panel = new JPanel(new BorderLayout(8, 8));
+        panel.setBorder(new EmptyBorder(12, 12, 12, 12));
+        panel.add(new JLabel(String.format("%,d filas", foto.size())), BorderLayout.NORTH);
+        panel.add(barra, BorderLayout.CENTER);
+        panel.add(btnCancelar, BorderLayout.EAST);
+        dialogo.add(panel);
+        dialogo.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialogo.setSize(420, 110);
+        dialogo.setLocationRelativeTo(padre);
+        barra.setIndeterminate(true); // mientras se sincroniza la base y hasta que avance el archivo
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                barra.setIndeterminate(false);
+                barra.setValue((Integer) e.getNewValue());
+            }
+        });
+    }
+
+    // empieza a guardar la foto y regresa de inmediato: primero corre sincronizar (que debe escribir en la base
+    // esa misma foto) y luego escribe el archivo. alTerminar se llama en el hilo de swing
+    static void exportar(Window padre, File destino, InventarioSnapshot foto,
+            Callable<SyncEngine.Resultado> sincronizar, Consumer<Resultado> alTerminar) {
+        var exp = new CsvExporter(padre, destino, foto, sincronizar, alTerminar);
+        exp.dialogo.setVisible(true);
+        exp.execute();
+    }
+
+    @Override
+    protected Resultado doInBackground() throws Exception {
+        try {
+            sincronizado = sincronizar.call();
+        } catch (Exception e) {
+            throw new IOException("No se pudo sincronizar la base de datos (no se escribio el archivo): "
+                    + e.getMessage(), e);
+        }
+        // nombre unico en la misma carpeta (el move tiene que quedarse en el mismo disco): dos exportaciones
+        // al mismo archivo, o un .tmp que dejo otro programa, no se pisan
+        Path temporal = Files.createTempFile(destino.toAbsolutePath().getParent(), destino.getFileName() + ".", ".tmp");
+        boolean listo = false;
+        try (var canal = FileChannel.open(temporal, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            permisos(temporal);
+            poner(ENCABEZADO);
+            poner(SALTO);
+            int total = foto.size();
+            for (int i = 0; i < total; i++) {
+                if ((i & 0x3FFF) == 0) {
+                    if (cancelar)
+                        return new Resultado(i, escritos, true, null, ms(), sincronizado);
+                    setProgress((int) (i * 100L / total));
+                }
+                String nombre = foto.nombre(i);
+                // lo mas que puede ocupar la fila: numeros + 3 bytes por char (el doble si son comillas) + 2 comillas
+                int maximo = 64 + SALTO.length + 6 * (nombre == null ? 0 : nombre.length());
+                if (buf.length - n < maximo) {
+                    vaciar(canal);
+                    if (buf.length < maximo)
+                        buf = new byte[maximo];
+                }
+                entero(foto.id(i));
+                buf[n++] = ',';
+                nombre(nombre);
+                buf[n++] = ',';
+                entero(foto.cantidad(i));
+                buf[n++] = ',';
+                precio(foto.centavos(i));
+                poner(SALTO);
+            }
+            vaciar(canal);
+            canal.force(false);
+            listo = true;
+        } finally {
+            if (!listo)
+                Files.deleteIfExists(temporal);
+        }
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+        setProgress(100);
+        return new Resultado(foto.size(), escritos, false, null, ms(), sincronizado);
+    }
+
+    // createTempFile lo crea solo para el dueño (rw-------); el CSV se queda con los permisos del archivo que
+    // reemplaza, o rw-r--r-- si es nuevo
+    private void permisos(Path temporal) throws IOException {
+        try {
+            Files.setPosixFilePermissions(temporal, Files.exists(destino) ? Files.getPosixFilePermissions(destino)
+                    : PosixFilePermissions.fromString("rw-r--r--"));
+        } catch (UnsupportedOperationException e) {
+            // windows: no hay permisos posix
+        }
+    }
+
+    private void vaciar(FileChannel canal) throws IOException {
+        var bb = ByteBuffer.wrap(buf, 0, n);
+        while (bb.hasRemaining()) {
+            canal.write(bb);
+        }
+        escritos += n;
+        n = 0;
+    }
+
+    private void poner(byte[] bytes) {
+        System.arraycopy(bytes, 0, buf, n, bytes.length);
+        n += bytes.length;
+    }
+
+    private void entero(long v) {
+        if (v < 0) {
+            buf[n++] = '-';
+            v = -v;
+        }
+        digitos(v);
+    }
+
+    private void digitos(long v) {
+        int fin = n + largo(v);
+        for (int i = fin - 1; i >= n; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        n = fin;
+    }
+
+    private static int largo(long v) {
+        int d = 1;
+        while (v >= 10) {
+            v /= 10;
+            d++;
+        }
+        return d;
+    }
+
+    // igual que BigDecimal.valueOf(centavos, 2).toString(): "12.50", "-0.05"
+    private void precio(long centavos) {
+        if (centavos < 0)
+            buf[n++] = '-';
+        digitos(Math.abs(centavos / 100));
+        long c = Math.abs(centavos % 100);
+        buf[n++] = '.';
+        buf[n++] = (byte) ('0' + c / 10);
+        buf[n++] = (byte) ('0' + c % 10);
+    }
+
+    // el nombre en UTF-8 en una sola pasada. se escribe un lugar despues por si hay que abrir comillas; si
+    // trae coma, comilla o salto de linea se ponen las comillas (y las comillas internas van dobles), si no
+    // se recorre un lugar a la izquierda
+    private void nombre(String s) {
+        if (s == null)
+            return;
+        int inicio = n;
+        n++;
+        boolean comillas = false;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == ',' || c == '\n' || c == '\r') {
+                    comillas = true;
+                } else if (c == '"') {
+                    comillas = true;
+                    buf[n++] = '"';
+                }
+                buf[n++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[n++] = (byte) (0xC0 | (c >> 6));
+                buf[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[n++] = (byte) (0xF0 | (cp >> 18));
+                buf[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[n++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[n++] = '?'; // mitad de un par suelta: lo mismo que hace String.getBytes
+            } else {
+                buf[n++] = (byte) (0xE0 | (c >> 12));
+                buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        if (comillas) {
+            buf[inicio] = '"';
+            buf[n++] = '"';
+        } else {
+            System.arraycopy(buf, inicio + 1, buf, inicio, n - inicio - 1);
+            n--;
+        }
+    }
+
+    @Override
+    protected void done() {
+        dialogo.dispose();
+        Resultado r;
+        try {
+            r = get();
+        } catch (CancellationException e) {
+            r = new Resultado(0, 0, true, null, ms(), sincronizado);
+        } catch (Exception e) {
+            Throwable causa = e.getCause() != null ? e.getCause() : e;
+            r = new Resultado(0, 0, false, causa.getMessage(), ms(), sincronizado);
+        }
+        if (sincronizado != null)
+            System.out.println("Sincronización modelo → SQLite completada: " + sincronizado);
+        System.out.println("Exportacion CSV " + destino.getFileName() + ": " + r
+                + (r.cancelado() ? " (cancelada)" : r.error() != null ? " (error: " + r.error() + ")" : ""));
+        alTerminar.accept(r);
+    }
+
+    private long ms() {
+        return (System.nanoTime() - inicio) / 1_000_000;
+    }
+}
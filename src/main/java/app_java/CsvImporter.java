@@ -0,0 +1,471 @@
+package app_java;
+
+import java.awt.BorderLayout;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+import javax.swing.border.EmptyBorder;
+
+// importa un CSV (id,nombre,cantidad,precio) en otro hilo sin trabar la ventana:
+// - el archivo se lee mapeado en memoria directo de los bytes (ver LectorCsv), no se carga completo
+// - se parte en tramos que se leen en paralelo en el ForkJoinPool; los resultados se toman en el orden del
+//   archivo, asi las llaves repetidas se resuelven igual siempre: gana la primera fila del archivo
+// - REEMPLAZAR: cada lote de filas se escribe en sqlite (batch) y se agrega al modelo con un solo aviso a
+//   la tabla; la tabla de la base se reemplaza dentro de una sola transaccion con el perfil de escritura masiva
+// - los demas modos (archivos parciales de proveedores) comparan el archivo con una foto del modelo en una
+//   sola pasada y solo las filas que cambian van a la base (un batch, una transaccion) y al modelo
+// - una ventana muestra el avance (filas por segundo y cuanto falta) con un boton para cancelar
+// - si se cancela o algo falla se hace rollback y el modelo regresa a lo que tenia antes
+// lo usan UiGeneral y UiInventario
+final class CsvImporter extends SwingWorker<CsvImporter.Resultado, Void> {
+    private static final int LOTE = 5_000;
+    private static final long TRAMO = 8L << 20; // bytes por tramo que lee cada hilo
+    // tramos leidos o por leer que aun no se escriben; limita la memoria si la base escribe mas lento
+    private static final int EN_VUELO = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
+
+    enum Modo {
+        REEMPLAZAR("Reemplazar todo el inventario"),
+        UNIR_POR_ID("Unir por ID (agrega nuevos y actualiza los existentes)"),
+        UNIR_POR_NOMBRE("Unir por nombre (actualiza cantidad y precio, agrega nuevos)"),
+        SOLO_CANTIDADES("Solo cantidades por ID (no agrega productos)");
+
+        private final String texto;
+
+        Modo(String texto) {
+            this.texto = texto;
+        }
+
+        @Override
+        public String toString() {
+            return texto;
+        }
+    }
+
+    // omitidos: filas del archivo que no se aplicaron (llave repetida en el archivo, nombre que ya es de otro
+    // producto, o en SOLO_CANTIDADES un ID que no existe)
+    record Resultado(Modo modo, int insertados, int actualizados, int sinCambios, int omitidos, boolean cancelado,
+            String error, long ms) {
+        @Override
+        public String toString() {
+            return insertados + " nuevos, " + actualizados + " actualizados, " + sinCambios + " sin cambios, "
+                    + omitidos + " omitidos en " + ms + " ms";
+        }
+    }
+
+    // recibe las filas de un tramo (en el orden del archivo)
+    private interface PorTramo {
+        void aceptar(List<Producto> filas) throws SQLException;
+    }
+
+    private final File archivo;
+    private final InventarioModel model;
+    private final Modo modo;
+    private final Consumer<Resultado> alTerminar;
+    private final JDialog dialogo;
+    private final JProgressBar barra = new JProgressBar(0, 1000);
+    private final JLabel lblAvance = new JLabel(" ");
+
+    // lotes ya escritos en la base que faltan de pasar al modelo; los saca el hilo de swing
+    private final ConcurrentLinkedQueue<List<Producto>> lotes = new ConcurrentLinkedQueue<>();
+    private volatile boolean cancelar; // el boton solo avisa; el hilo termina su lote y hace rollback
+    private volatile long bytesLeidos;
+    private volatile int filasLeidas;
+    private List<Producto> lote = new ArrayList<>(LOTE); // el que se esta juntando al reemplazar
+    private int omitidos;
+    private int maxId; // el mayor ID del archivo y del modelo; de ahi salen los IDs nuevos al unir por nombre
+    private final long inicio = System.nanoTime();
+    private InventarioSnapshot anteriores; // para regresar el modelo si no se completa (y para comparar al unir)
+    private InventarioModel.EstadoGuardado pendientesAnteriores; // y lo que tenia pendiente de guardar
+    // al unir: lo que ya quedo en la base y falta pasar al modelo en done()
+    private List<Producto> nuevos = List.of();
+    private List<Producto> cambiados = List.of();
+
+    private CsvImporter(Window padre, File archivo, InventarioModel model, Modo modo,
+            Consumer<Resultado> alTerminar) {
+        this.archivo = archivo;
+        this.model = model;
+        this.modo = modo;
+        this.alTerminar = alTerminar;
+        dialogo = new JDialog(padre, "Importando " + archivo.getName(), JDialog.ModalityType.APPLICATION_MODAL);
+        var btnCancelar = new JButton("Cancelar");
+        btnCancelar.addActionListener(e -> {
+            cancelar = true;
+            btnCancelar.setEnabled(false);
+            lblAvance.setText("Cancelando…");
+        });
+        dialogo.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialogo.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                btnCancelar.doClick();
+            }
+        });
+        var panel = new JPanel(new BorderLayout(8, 8));
+        panel.setBorder(new EmptyBorder(12, 12, 12, 12));
+        panel.add(barra, BorderLayout.NORTH);
+        panel.add(lblAvance, BorderLayout.CENTER);
+        panel.add(btnCancelar, BorderLayout.EAST);
+        dialogo.add(panel);
+        dialogo.setSize(460, 130);
+        dialogo.setLocationRelativeTo(padre);
+    }
+
+    // arranca la importacion y muestra el avance; regresa cuando termina (la ventana es modal pero la
+    // tabla se sigue pintando). alTerminar se llama en el hilo de swing con el resultado
+    static void importar(Window padre, File archivo, InventarioModel model, Modo modo,
+            Consumer<Resultado> alTerminar) {
+        var imp = new CsvImporter(padre, archivo, model, modo, alTerminar);
+        imp.anteriores = model.snapshotAlDia();
+        imp.pendientesAnteriores = model.estadoGuardado();
+        if (modo == Modo.REEMPLAZAR)
+            model.setAll(List.of()); // se va llenando por lotes; al unir la tabla se queda como esta
+        imp.execute();
+        imp.dialogo.setVisible(true);
+    }
+
+    @Override
+    protected Resultado doInBackground() throws Exception {
+        return modo == Modo.REEMPLAZAR ? reemplazar(archivo.toPath()) : unir(archivo.toPath());
+    }
+
+    private Resultado reemplazar(Path ruta) throws Exception {
+        // mientras dura la carga se usa el perfil de escritura masiva y al terminar se regresa al normal
+        // (try/finally y no try-with-resources: el perfil no se usa dentro del bloque y javac lo marca)
+        ConnectionPool.PerfilTemporal perfil = ConnectionPool.get().perfilTemporal(StorageProfile.BULK_LOAD);
+        try (var lease = ConnectionPool.get().escritura()) {
+            Connection conn = lease.conn();
+            conn.setAutoCommit(false);
+            // la transaccion tiene la conexion de escritura hasta el final (puede tardar minutos): la cola de
+            // escritura de la otra ventana y REST esperan en vez de fallar a los esperaMs
+            ConnectionPool.get().escrituraLarga(true);
+            try (Statement st = conn.createStatement();
+                    PreparedStatement ins = conn.prepareStatement(
+                            "INSERT INTO PRODUCTOS(ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS) VALUES (?,?,?,?)")) {
+                // la tabla queda igual que el archivo. se queda la primera fila de cada ID y de cada nombre
+                // normalizado; las repetidas se omiten (si no, UX_PRODUCTOS_NOMBRE tumba toda la transaccion)
+                st.executeUpdate("DELETE FROM PRODUCTOS");
+                IntIntMap vistos = new IntIntMap();
+                Set<String> nombresVistos = new HashSet<>();
+                boolean completo = leerEnOrden(ruta, filas -> {
+                    for (Producto p : filas) {
+                        if (vistos.get(p.id) != IntIntMap.NO_ESTA
+                                || (p.nombre != null && !nombresVistos.add(Database.normalizarNombre(p.nombre)))) {
+                            omitidos++;
+                            continue;
+                        }
+                        vistos.put(p.id, 0);
+                        ins.setInt(1, p.id);
+                        ins.setString(2, p.nombre);
+                        ins.setInt(3, p.cantidad);
+                        ins.setLong(4, p.centavos);
+                        ins.addBatch();
+                        lote.add(p);
+                        if (lote.size() == LOTE) {
+                            entregar(ins, lote);
+                            lote = new ArrayList<>(LOTE);
+                        }
+                    }
+                });
+                if (!completo) {
+                    conn.rollback();
+                    return resultado(true, null);
+                }
+                entregar(ins, lote);
+                conn.commit();
+                Database.avisarCambio();
+                return resultado(false, null);
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback(); // la tabla queda como estaba
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                ConnectionPool.get().escrituraLarga(false);
+            }
+        } finally {
+            perfil.close();
+        }
+    }
+
+    // compara el archivo con la foto del modelo tomada al empezar. nada se escribe hasta el final: se juntan
+    // las filas nuevas y las que cambian y van a sqlite en una sola transaccion (SyncEngine.aplicarCambios).
+    // el costo es una pasada por el archivo y una por la foto; sin indices extra sobre el inventario completo
+    private Resultado unir(Path ruta) throws Exception {
+        // 1) el archivo: se queda la primera fila de cada llave, las repetidas se omiten.
+        // UNIR_POR_ID tambien omite un nombre repetido con otro ID (el nombre normalizado es unico en la base)
+        boolean porNombre = modo == Modo.UNIR_POR_NOMBRE;
+        boolean conNombres = modo != Modo.SOLO_CANTIDADES;
+        List<Producto> filas = new ArrayList<>();
+        IntIntMap idsArchivo = new IntIntMap(); // ID -> indice en filas
+        Map<String, Integer> nombresArchivo = new HashMap<>(); // nombre normalizado -> indice en filas
+        IntIntMap hashesArchivo = new IntIntMap(); // hash de esos nombres, para no normalizar cada nombre de la foto
+        boolean completo = leerEnOrden(ruta, tramo -> {
+            for (Producto p : tramo) {
+                String clave = conNombres ? Database.normalizarNombre(p.nombre) : null;
+                boolean idRepetido = idsArchivo.get(p.id) != IntIntMap.NO_ESTA;
+                if ((!porNombre && idRepetido) || (conNombres && nombresArchivo.containsKey(clave))) {
+                    omitidos++;
+                    continue;
+                }
+                if (!idRepetido)
+                    idsArchivo.put(p.id, filas.size());
+                if (conNombres) {
+                    nombresArchivo.put(clave, filas.size());
+                    hashesArchivo.put(clave.hashCode(), 0);
+                }
+                maxId = Math.max(maxId, p.id);
+                filas.add(p);
+            }
+            filasLeidas = filas.size();
+            publish();
+        });
+        if (!completo)
+            return resultado(true, null);
+
+        // 2) una pasada por la foto: a que fila del modelo le toca cada fila del archivo
+        InventarioSnapshot foto = anteriores;
+        int[] filaModelo = new int[filas.size()];
+        Arrays.fill(filaModelo, -1);
+        // UNIR_POR_ID: el nombre ya lo tiene otro producto. UNIR_POR_NOMBRE: el ID ya lo usa otro producto
+        boolean[] ocupado = new boolean[filas.size()];
+        for (int i = 0; i < foto.size(); i++) {
+            if ((i & 0xFFFF) == 0 && cancelar)
+                return resultado(true, null);
+            int id = foto.id(i);
+            maxId = Math.max(maxId, id);
+            int f = idsArchivo.get(id);
+            if (f != IntIntMap.NO_ESTA) {
+                if (porNombre)
+                    ocupado[f] = true;
+                else
+                    filaModelo[f] = i;
+            }
+            if (conNombres && hashesArchivo.get(hashNormalizado(foto.nombre(i))) != IntIntMap.NO_ESTA) {
+                Integer g = nombresArchivo.get(Database.normalizarNombre(foto.nombre(i)));
+                if (g != null) {
+                    if (porNombre)
+                        filaModelo[g] = i;
+                    else if (filas.get(g).id != id)
+                        ocupado[g] = true;
+                }
+            }
+        }
+
+        // 3) que se inserta, que se actualiza y que queda igual
+        List<Producto> altas = new ArrayList<>();
+        List<Producto> cambios = new ArrayList<>();
+        int sinCambios = 0;
+        for (int f = 0; f < filas.size(); f++) {
+            Producto p = filas.get(f);
+            int i = filaModelo[f];
+            Producto q;
+            if (i < 0) {
+                if (modo == Modo.SOLO_CANTIDADES || (modo == Modo.UNIR_POR_ID && ocupado[f])) {
+                    omitidos++;
+                } else if (porNombre && (ocupado[f] || idsArchivo.get(p.id) != f)) {
+                    altas.add(new Producto(++maxId, p.nombre, p.cantidad, p.centavos)); // su ID ya es de otro
+                } else {
+                    altas.add(p);
+                }
+                continue;
+            }
+            switch (modo) {
+                case UNIR_POR_ID -> {
+                    if (ocupado[f]) {
+                        omitidos++;
+                        continue;
+                    }
+                    q = p;
+                }
+                // el producto conserva su ID y como esta escrito su nombre
+                case UNIR_POR_NOMBRE -> q = new Producto(foto.id(i), foto.nombre(i), p.cantidad, p.centavos);
+                default -> q = new Producto(foto.id(i), foto.nombre(i), p.cantidad, foto.centavos(i));
+            }
+            if (q.nombre.equals(foto.nombre(i)) && q.cantidad == foto.cantidad(i) && q.centavos == foto.centavos(i))
+                sinCambios++;
+            else
+                cambios.add(q);
+        }
+        if (cancelar)
+            return resultado(true, null);
+
+        // 4) la base en una sola transaccion; si falla no se toca el modelo
+        SyncEngine.aplicarCambios(altas, cambios, List.of());
+        nuevos = altas;
+        cambiados = cambios;
+        return new Resultado(modo, altas.size(), cambios.size(), sinCambios, omitidos, false, null, ms());
+    }
+
+    // Database.normalizarNombre(nombre).hashCode() sin crear el String: casi ningun nombre del inventario
+    // esta en el archivo, asi solo se normalizan los que probablemente si
+    private static int hashNormalizado(String nombre) {
+        if (nombre == null)
+            return 0;
+        int d = 0, h = nombre.length();
+        while (d < h && nombre.charAt(d) == ' ')
+            d++;
+        while (h > d && nombre.charAt(h - 1) == ' ')
+            h--;
+        int hash = 0;
+        for (int i = d; i < h; i++) {
+            char c = nombre.charAt(i);
+            hash = 31 * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+        }
+        return hash;
+    }
+
+    // lee los tramos en paralelo y los entrega en el orden del archivo; false si se cancelo
+    private boolean leerEnOrden(Path ruta, PorTramo porTramo)
+            throws IOException, InterruptedException, SQLException {
+        List<LectorCsv.Tramo> tramos = LectorCsv.partir(ruta, TRAMO);
+        Deque<Future<List<Producto>>> enVuelo = new ArrayDeque<>();
+        try {
+            int enviados = 0;
+            for (int k = 0; k < tramos.size(); k++) {
+                if (cancelar)
+                    return false;
+                while (enviados < tramos.size() && enVuelo.size() < EN_VUELO) {
+                    var t = tramos.get(enviados);
+                    boolean conEncabezado = enviados == 0;
+                    enVuelo.add(ForkJoinPool.commonPool().submit(() -> leerTramo(ruta, t, conEncabezado)));
+                    enviados++;
+                }
+                porTramo.aceptar(esperar(enVuelo.poll()));
+                bytesLeidos = tramos.get(k).hasta();
+            }
+            return !cancelar;
+        } finally {
+            for (var f : enVuelo)
+                f.cancel(true);
+        }
+    }
+
+    // lee un tramo completo en un hilo del pool; el primero trae el encabezado
+    private static List<Producto> leerTramo(Path ruta, LectorCsv.Tramo t, boolean conEncabezado)
+            throws IOException {
+        List<Producto> filas = new ArrayList<>();
+        try (var l = new LectorCsv(ruta, t)) {
+            if (conEncabezado)
+                l.saltarLinea();
+            while (l.siguiente()) {
+                filas.add(new Producto(l.id(), l.nombre(), l.cantidad(), l.centavos()));
+            }
+        }
+        return filas;
+    }
+
+    // el error de un tramo sale como si se hubiera leido aqui (ej. "Linea 1234: CSV inválido")
+    private static List<Producto> esperar(Future<List<Producto>> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io)
+                throw io;
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // al reemplazar todo lo leido es nuevo
+    private Resultado resultado(boolean cancelado, String error) {
+        return new Resultado(modo, modo == Modo.REEMPLAZAR ? filasLeidas : 0, 0, 0, omitidos, cancelado, error,
+                ms());
+    }
+
+    private void entregar(PreparedStatement ins, List<Producto> lote) throws SQLException {
+        if (lote.isEmpty())
+            return;
+        ins.executeBatch();
+        lotes.add(lote);
+        filasLeidas += lote.size();
+        publish(); // solo despierta a process(); los lotes van por la cola
+    }
+
+    // varios publish() seguidos llegan juntos aqui: todos los lotes pendientes van al modelo en un solo aviso
+    @Override
+    protected void process(List<Void> avisos) {
+        pasarLotes();
+        long n = filasLeidas;
+        double seg = (System.nanoTime() - inicio) / 1e9;
+        long total = Math.max(archivo.length(), 1);
+        long leidos = Math.min(bytesLeidos, total);
+        barra.setValue((int) (leidos * 1000 / total));
+        if (cancelar)
+            return;
+        String avance = String.format("%,d filas · %,.0f filas/s", n, n / Math.max(seg, 1e-3));
+        if (leidos > 0)
+            avance += " · faltan " + Math.round(seg * (total - leidos) / leidos) + " s";
+        lblAvance.setText(avance);
+    }
+
+    private void pasarLotes() {
+        List<Producto> juntos = null;
+        for (List<Producto> l; (l = lotes.poll()) != null;) {
+            if (juntos == null) {
+                juntos = l;
+            } else {
+                juntos.addAll(l);
+            }
+        }
+        if (juntos != null)
+            model.agregarTodos(juntos);
+    }
+
+    // process() puede llegar despues de done(): por eso los lotes van por una cola y aqui se vacia
+    @Override
+    protected void done() {
+        dialogo.dispose();
+        Resultado r;
+        try {
+            r = get();
+        } catch (Exception e) {
+            Throwable causa = e.getCause() != null ? e.getCause() : e;
+            r = resultado(false, causa.getMessage());
+        }
+        lotes.clear(); // lo que falte de pasar ya no importa si no se completo
+        if (r.cancelado() || r.error() != null) {
+            if (modo == Modo.REEMPLAZAR)
+                model.restaurar(anteriores, pendientesAnteriores); // la base hizo rollback; el modelo tambien regresa
+        } else if (modo == Modo.REEMPLAZAR) {
+            pasarLotes();
+            model.marcarGuardado(); // la base ya tiene exactamente lo que tiene el modelo
+        } else {
+            model.fusionar(cambiados, nuevos); // ya estan en la base
+        }
+        System.out.println("Importacion CSV " + archivo.getName() + " (" + modo.name() + "): " + r
+                + (r.cancelado() ? " (cancelada)" : r.error() != null ? " (error: " + r.error() + ")" : ""));
+        alTerminar.accept(r);
+    }
+
+    private long ms() {
+        return (System.nanoTime() - inicio) / 1_000_000;
+    }
+}
@@ -2,55 +2,275 @@ package app_java;
  //aqui importamos librerias necesarias para la conexion a la base de datos y manejo de consultas sql
 // import java.lang.Thread.State;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Database {
-    public static void CrearDB() { //aqui se crea la base de datos con una consulta de sqlite 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:inventario.db")) { //esperamos que el archivo encuentre la ruta de la conexion a la base de datos
-            Statement stmt = conn.createStatement(); //creamos una sentencia para ejecutar consultas SQL
-
-            String sql = "CREATE TABLE IF NOT EXISTS PRODUCTOS (" +
-                    "ID INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "NOMBRE VARCHAR (200)," +
-                    "CANTIDAD INTEGER," +
-                    "PRECIO REAL" +
-                    ");";
-//creamos los elementos que necesitaremos id, nombre, cantidad y precio
-            stmt.execute(sql); //ejecutamos la sentencia de sql con stmt para evitar inyecciones sql
+    public static void CrearDB() { //aqui se crea la base de datos (o se actualiza su esquema) con las migraciones
+        try (var lease = ConnectionPool.get().escritura()) { //pedimos la conexion de escritura al pool
+            //la tabla PRODUCTOS (id, nombre, cantidad y precio en centavos) y sus indices se crean en Migraciones
+            Migraciones.aplicar(lease.conn());
             System.out.println("Base de datos creada correctamente"); //mensaje de que todo salio bien
-        } catch (Exception e) { //en caso de que haya un error lo atrapamos con catch
+        } catch (SQLException e) { //en caso de que haya un error lo atrapamos con catch
             e.printStackTrace();
         }
+        //si la base es mas nueva que la app, Migraciones lanza IllegalStateException y la app no arranca
     }
 
-    public static ResultSet showProducts() throws SQLException { //metodo para para mandar los datos de la base de datos al frontend
-        String url = "jdbc:sqlite:inventario.db"; // ruta a tu base
-        Connection conn = DriverManager.getConnection(url); //conexion a la base de datos
-        Statement stmt = conn.createStatement(); //creamos la sentencia para ejecutar consultas sql
-        return stmt.executeQuery("SELECT * FROM PRODUCTOS"); //retornaremos los valores que nos dio stmt despues
-        //de la consulta sql
-    
-}
+    // nombre normalizado: sin espacios a los lados y en minusculas, asi "Tornillo " y "tornillo" son el mismo.
+    // se usa igual en el indice y en las consultas para que sqlite pueda usar el indice
+    static final String NOMBRE_NORMALIZADO = "lower(trim(NOMBRE))";
 
-    public static int insertProduct(String nombre, int cantidad, double precio) { //metodo para insertar productos a la base de datos
-        //usamos de parametros nombre, cantidad y precio
-        System.out.println("insertProduct llamado con: " + nombre);
+    // lo mismo que NOMBRE_NORMALIZADO pero en java, para comparar nombres sin ir a la base. el trim de sqlite
+    // solo quita espacios y su lower solo cambia letras ASCII (toLowerCase juntaria "Ñ" con "ñ" y el indice no)
+    static String normalizarNombre(String nombre) {
+        if (nombre == null)
+            return "";
+        int d = 0, h = nombre.length();
+        while (d < h && nombre.charAt(d) == ' ')
+            d++;
+        while (h > d && nombre.charAt(h - 1) == ' ')
+            h--;
+        char[] cs = null;
+        for (int i = d; i < h; i++) {
+            char c = nombre.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (cs == null)
+                    cs = nombre.substring(d, h).toCharArray();
+                cs[i - d] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return cs != null ? new String(cs) : nombre.substring(d, h); // ya normalizado: sin copiar
+    }
+
+    // quien muestra datos leidos de la base (ej. el catalogo paginado) se entera cuando otro hace commit en
+    // PRODUCTOS (la cola de escritura, SyncEngine, la importacion). el aviso llega en el hilo que escribio y
+    // todavia con la conexion de escritura: solo hay que encargar el trabajo, no hacerlo ahi
+    private static final List<Runnable> alCambiar = new CopyOnWriteArrayList<>();
+
+    static void alCambiar(Runnable aviso) {
+        alCambiar.add(aviso);
+    }
+
+    static void yaNoAvisar(Runnable aviso) {
+        alCambiar.remove(aviso);
+    }
+
+    static void avisarCambio() {
+        for (Runnable r : alCambiar)
+            r.run();
+    }
+
+    public static final int PAGINA_POR_DEFECTO = 1_000; // filas que se leen por consulta al recorrer la tabla
+
+    // lee una pagina de productos con ID mayor a despuesDe (paginacion por llave: WHERE ID > ? LIMIT ?)
+    // la conexion regresa al pool en cuanto se termina de leer la pagina, asi no queda nada abierto
+    public static List<Producto> productPage(int despuesDe, int limite) throws SQLException {
+        String sql = "SELECT ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS FROM PRODUCTOS WHERE ID > ? ORDER BY ID LIMIT ?";
+        List<Producto> pagina = new ArrayList<>(limite);
 
-        // Imprimir trazas para ver quien lo llama
-        new Exception("TRACE insertProduct").printStackTrace(System.out); // debuggeando
+        try (var lease = ConnectionPool.get().lectura(); //pedimos una conexion de lectura al pool
+                PreparedStatement pstmt = lease.conn().prepareStatement(sql)) {
+            pstmt.setInt(1, despuesDe);
+            pstmt.setInt(2, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    pagina.add(leerProducto(rs));
+                }
+            }
+        }
+        return pagina;
+    }
+
+    // recorre toda la tabla pagina por pagina y llama a la accion con cada producto
+    // en memoria solo hay una pagina a la vez, sirve igual para 100 filas o para millones
+    public static int forEachProduct(int tamPagina, Consumer<Producto> accion) throws SQLException {
+        int ultimoId = 0, total = 0;
+        while (true) {
+            List<Producto> pagina = productPage(ultimoId, tamPagina);
+            for (Producto p : pagina) {
+                accion.accept(p);
+            }
+            total += pagina.size();
+            if (pagina.size() < tamPagina) {
+                return total; // la ultima pagina vino incompleta: ya no hay mas filas
+            }
+            ultimoId = pagina.get(pagina.size() - 1).id;
+        }
+    }
+
+    // lo mismo que forEachProduct pero como Stream; las paginas se piden conforme se consumen.
+    // como cada pagina devuelve su conexion al terminar, el stream no deja recursos abiertos
+    // aunque no se consuma completo o no se cierre
+    public static Stream<Producto> streamProducts(int tamPagina) {
+        var it = new Spliterators.AbstractSpliterator<Producto>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT) {
+            private List<Producto> pagina = List.of();
+            private int pos;
+            private int ultimoId;
+            private boolean fin;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Producto> accion) {
+                if (pos == pagina.size()) {
+                    if (fin)
+                        return false;
+                    try {
+                        pagina = productPage(ultimoId, tamPagina);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Error al leer productos: " + e.getMessage(), e);
+                    }
+                    pos = 0;
+                    fin = pagina.size() < tamPagina;
+                    if (pagina.isEmpty())
+                        return false;
+                    ultimoId = pagina.get(pagina.size() - 1).id;
+                }
+                accion.accept(pagina.get(pos++));
+                return true;
+            }
+        };
+        return StreamSupport.stream(it, false);
+    }
 
-        String sql = "INSERT INTO productos(nombre, cantidad, precio) VALUES (?,?,?)"; //consulta sql para insertar los valores protegido con stmt
+    // ======== Consultas paginadas con orden y filtro (para la tabla virtual del catalogo) ========
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:inventario.db"); //esperando la conexiuon con la base de datos
-                PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) { //preparamos la sentencia sql
+    // expresion SQL de cada columna de la tabla (mismo orden que InventarioModel). todas tienen indice
+    // (la llave primaria, UX_PRODUCTOS_NOMBRE y los de la migracion 5), asi ordenar no lee la tabla completa.
+    // el nombre se ordena por sus bytes (en minusculas ASCII), no como el Collator en español de las tablas en
+    // memoria (ColumnarStore): aqui "Ñandu" y los acentos quedan despues de la "z". una collation propia no
+    // podria usar UX_PRODUCTOS_NOMBRE y ordenar un catalogo grande leeria la tabla completa
+    static final String[] ORDEN_COLUMNAS = { "ID", NOMBRE_NORMALIZADO, "CANTIDAD", "PRECIO_CENTAVOS",
+            "CANTIDAD * PRECIO_CENTAVOS" };
+
+    // condicion para el WHERE con sus parametros; NINGUNA no filtra nada
+    public record Condicion(String sql, List<Object> parametros) {
+        public static final Condicion NINGUNA = new Condicion("1", List.of());
+
+        // productos cuyo nombre coincide con el texto en el indice de texto completo (o con LIKE mientras
+        // la migracion que crea el indice todavia se esta aplicando)
+        public static Condicion texto(String texto) {
+            if (!Migraciones.aplicada(Migraciones.TEXTO_COMPLETO))
+                return textoSinIndice(texto == null ? "" : texto);
+            String consulta = consultaFts(texto == null ? "" : texto);
+            if (consulta.isEmpty())
+                return NINGUNA;
+            return new Condicion("ID IN (SELECT rowid FROM PRODUCTOS_FTS WHERE PRODUCTOS_FTS MATCH ?)",
+                    List.of(consulta));
+        }
+
+        // cada palabra tiene que aparecer en el nombre (LIKE no distingue mayusculas ASCII). recorre la tabla,
+        // solo se usa mientras no existe PRODUCTOS_FTS
+        static Condicion textoSinIndice(String texto) {
+            List<String> partes = new ArrayList<>();
+            List<Object> parametros = new ArrayList<>();
+            for (String palabra : palabras(texto)) {
+                partes.add("NOMBRE LIKE ?");
+                parametros.add("%" + palabra + "%"); // solo letras y numeros: no hay % ni _ que escapar
+            }
+            return partes.isEmpty() ? NINGUNA : new Condicion(String.join(" AND ", partes), parametros);
+        }
+    }
+
+    // ultima fila de una pagina: el valor de la columna de orden y el ID (desempata valores repetidos)
+    public record Clave(Object valor, int id) {
+    }
+
+    public record Pagina(List<Producto> filas, Clave ultima) {
+    }
+
+    public static int countProducts(Condicion filtro) throws SQLException {
+        try (var lease = ConnectionPool.get().lectura();
+                PreparedStatement pstmt = lease.conn().prepareStatement(
+                        "SELECT COUNT(*) FROM PRODUCTOS WHERE " + filtro.sql())) {
+            ponerParametros(pstmt, filtro.parametros(), 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // una pagina ordenada por la columna indicada. con la clave de la pagina anterior se sigue desde ahi
+    // (WHERE (col, ID) > (?, ?), usa el indice y cuesta lo mismo en la pagina 1 que en la 10,000); sin ella,
+    // por ejemplo al saltar con la barra de scroll, se usa OFFSET
+    public static Pagina productPage(int columna, boolean descendente, Condicion filtro, Clave despuesDe,
+            long offset, int limite) throws SQLException {
+        String expr = ORDEN_COLUMNAS[columna];
+        String dir = descendente ? " DESC" : "";
+        // ID y nombre normalizado ya son unicos: no necesitan el ID para desempatar (y asi usan su indice)
+        boolean unica = columna <= 1;
+        StringBuilder sql = new StringBuilder("SELECT ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS, ")
+                .append(expr).append(" AS CLAVE FROM PRODUCTOS WHERE (").append(filtro.sql()).append(')');
+        if (despuesDe != null)
+            sql.append(" AND ").append(unica ? expr : "(" + expr + ", ID)").append(descendente ? " < " : " > ")
+                    .append(unica ? "?" : "(?, ?)");
+        sql.append(" ORDER BY ").append(expr).append(dir);
+        if (!unica)
+            sql.append(", ID").append(dir);
+        sql.append(" LIMIT ?");
+        if (despuesDe == null)
+            sql.append(" OFFSET ?");
+
+        List<Producto> filas = new ArrayList<>(limite);
+        Clave ultima = null;
+        try (var lease = ConnectionPool.get().lectura();
+                PreparedStatement pstmt = lease.conn().prepareStatement(sql.toString())) {
+            int i = ponerParametros(pstmt, filtro.parametros(), 1);
+            if (despuesDe != null) {
+                pstmt.setObject(i++, despuesDe.valor());
+                if (!unica)
+                    pstmt.setInt(i++, despuesDe.id());
+            }
+            pstmt.setInt(i++, limite);
+            if (despuesDe == null)
+                pstmt.setLong(i, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Producto p = leerProducto(rs);
+                    filas.add(p);
+                    ultima = new Clave(rs.getObject("CLAVE"), p.id);
+                }
+            }
+        }
+        return new Pagina(filas, ultima);
+    }
+
+    private static int ponerParametros(PreparedStatement pstmt, List<Object> parametros, int desde)
+            throws SQLException {
+        for (Object o : parametros) {
+            pstmt.setObject(desde++, o);
+        }
+        return desde;
+    }
+
+    private static Producto leerProducto(ResultSet rs) throws SQLException {
+        return new Producto(
+                rs.getInt("ID"),
+                rs.getString("NOMBRE"),
+                rs.getInt("CANTIDAD"),
+                rs.getLong("PRECIO_CENTAVOS"));
+    }
+
+    public static int insertProduct(String nombre, int cantidad, long centavos) { //metodo para insertar productos a la base de datos
+        //usamos de parametros nombre, cantidad y precio
+        String sql = "INSERT INTO PRODUCTOS(NOMBRE, CANTIDAD, PRECIO_CENTAVOS) VALUES (?,?,?)"; //consulta sql para insertar los valores protegido con stmt
+
+        try (var lease = ConnectionPool.get().escritura(); //pedimos la conexion de escritura al pool
+                PreparedStatement pstmt = lease.conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) { //preparamos la sentencia sql
 
             pstmt.setString(1, nombre);
             pstmt.setInt(2, cantidad); //usamos pstsmt para seguridad contra inyecciones sql
-            pstmt.setDouble(3, precio);
+            pstmt.setLong(3, centavos);
 
             pstmt.executeUpdate(); //ejecutamos la sentencia
             System.out.println("Datos insertados correctamente");
@@ -68,11 +288,19 @@ public class Database {
     }
 
     public static void DeleteProduct(int id) { //metodo para borrar un elemento por medio de su id
-        String url = "jdbc:sqlite:inventario.db"; //ruta para la base de datos
+        try (var lease = ConnectionPool.get().escritura()) { //pedimos la conexion de escritura al pool
+            DeleteProduct(lease.conn(), id);
+        } catch (SQLException e) {
+            System.out.println("Error al eliminar el producto: " + e.getMessage());// mensaje de error si falla en algo
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(url)) { //esperando conexion con la base de datos
-            String sql = "DELETE FROM PRODUCTOS WHERE ID = ?"; //consulta sql para borra el producto basado en su id
-            PreparedStatement pstmt = conn.prepareStatement(sql); //se prepara la sentencia sql
+    // igual que DeleteProduct pero con una conexion ya abierta (la cola de escritura la usa dentro de su
+    // transaccion); regresa cuantas filas se borraron
+    static int DeleteProduct(Connection conn, int id) throws SQLException {
+        String sql = "DELETE FROM PRODUCTOS WHERE ID = ?"; //consulta sql para borra el producto basado en su id
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) { //se prepara la sentencia sql
             pstmt.setInt(1, id); //seteamos el id en la consulta
             int rows = pstmt.executeUpdate(); //ejecutamos la consulta y vemos cuantas filas son afectadas
             if (rows > 0) { //si es mayor a 0, se borro la fila de manera correcta
@@ -80,18 +308,14 @@ public class Database {
             } else {
                 System.out.println("No se encontró producto con ID " + id); //mensaje de error si no encuentra una fila con ese id
             }
-
-        } catch (SQLException e) {
-            System.out.println("Error al eliminar el producto: " + e.getMessage());// mensaje de error si falla en algo
+            return rows;
         }
     }
 
     // borrar todos los productos (para resync con CSV/modelo)
     public static void clearProducts() { //metodo para limpiar la tabla productos
-        String url = "jdbc:sqlite:inventario.db"; //ruta para la base de datos
-
-        try (Connection conn = DriverManager.getConnection(url); //esperando conexion con la base de datos
-                PreparedStatement pstmt = conn.prepareStatement("DELETE FROM PRODUCTOS")) { //sentencia para borrar todos los productos
+        try (var lease = ConnectionPool.get().escritura(); //pedimos la conexion de escritura al pool
+                PreparedStatement pstmt = lease.conn().prepareStatement("DELETE FROM PRODUCTOS")) { //sentencia para borrar todos los productos
 
             int rows = pstmt.executeUpdate(); //ejecutamos la consulta y vemos cuantas filas son afectadas
             System.out.println("Se eliminaron " + rows + " productos antes de sincronizar."); //mensaje de exito con el numero de filas borradas
@@ -101,15 +325,22 @@ public class Database {
     }
 
     // Actualizar un producto existente por ID (para onEditar)
-    public static void updateProduct(int id, String nombre, int cantidad, double precio) { //metodo para actualizar un producto por medio de su id
-        String sql = "UPDATE PRODUCTOS SET NOMBRE = ?, CANTIDAD = ?, PRECIO = ? WHERE ID = ?"; //semtencia sql para actualizar protegida con pstmt
+    public static void updateProduct(int id, String nombre, int cantidad, long centavos) { //metodo para actualizar un producto por medio de su id
+        try (var lease = ConnectionPool.get().escritura()) { //pedimos la conexion de escritura al pool
+            updateProduct(lease.conn(), id, nombre, cantidad, centavos);
+        } catch (SQLException e) {
+            System.out.println("Error al actualizar el producto: " + e.getMessage());//error
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:inventario.db"); //esperando conexion con la base de datos
-                PreparedStatement pstmt = conn.prepareStatement(sql)) { //preparamos la sentencia sql
+    // igual que updateProduct pero con una conexion ya abierta; regresa cuantas filas se actualizaron
+    static int updateProduct(Connection conn, int id, String nombre, int cantidad, long centavos) throws SQLException {
+        String sql = "UPDATE PRODUCTOS SET NOMBRE = ?, CANTIDAD = ?, PRECIO_CENTAVOS = ? WHERE ID = ?"; //semtencia sql para actualizar protegida con pstmt
 
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) { //preparamos la sentencia sql
             pstmt.setString(1, nombre);
             pstmt.setInt(2, cantidad);
-            pstmt.setDouble(3, precio);
+            pstmt.setLong(3, centavos);
             pstmt.setInt(4, id);
 
             int rows = pstmt.executeUpdate(); //ejecutamos la consulta y vemos cuantas filas fueron afectadas
@@ -118,23 +349,21 @@ public class Database {
             } else {
                 System.out.println("No se encontró producto con ID " + id + " para actualizar"); //en caso de que no encuentr ninguna fila con ese id
             }
-
-        } catch (SQLException e) {
-            System.out.println("Error al actualizar el producto: " + e.getMessage());//error
+            return rows;
         }
     }
 
     // Insertar respetando el ID (para cuando leemos desde CSV)
-    public static void insertProductWithId(int id, String nombre, int cantidad, double precio) { 
-        String sql = "INSERT INTO PRODUCTOS(ID, NOMBRE, CANTIDAD, PRECIO) VALUES (?,?,?,?)"; //consulta sql para insertar los valores protegido con stmt
+    public static void insertProductWithId(int id, String nombre, int cantidad, long centavos) { 
+        String sql = "INSERT INTO PRODUCTOS(ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS) VALUES (?,?,?,?)"; //consulta sql para insertar los valores protegido con stmt
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:inventario.db"); //esperando la conexiuon con la base de datos
-                PreparedStatement pstmt = conn.prepareStatement(sql)) { //preparamos la sentencia sql
+        try (var lease = ConnectionPool.get().escritura(); //pedimos la conexion de escritura al pool
+                PreparedStatement pstmt = lease.conn().prepareStatement(sql)) { //preparamos la sentencia sql
 
             pstmt.setInt(1, id);
             pstmt.setString(2, nombre);
             pstmt.setInt(3, cantidad);
-            pstmt.setDouble(4, precio);
+            pstmt.setLong(4, centavos);
 
             pstmt.executeUpdate(); //ejecutamos la sentencia
             System.out.println("Producto con ID " + id + " insertado desde CSV."); //mensaje de exito
@@ -142,13 +371,126 @@ public class Database {
             System.out.println("Error al insertar producto con ID fijo: " + e.getMessage()); //mensaje de error por si falla algo
         }
     }
+    // resultado de upsertProduct: el ID del producto y si se creo (false = ya existia uno con ese nombre)
+    public record Upsert(int id, boolean creado) {
+    }
+
+    // inserta el producto si no existe otro con el mismo nombre normalizado, en una sola sentencia.
+    // el indice unico decide el conflicto dentro de sqlite, asi dos terminales que crean el mismo producto
+    // al mismo tiempo no pueden duplicarlo (antes era productExist + insertProduct en dos conexiones)
+    public static Upsert upsertProduct(String nombre, int cantidad, long centavos) {
+        try (var lease = ConnectionPool.get().escritura()) { //pedimos la conexion de escritura al pool
+            return upsertProduct(lease.conn(), nombre, cantidad, centavos);
+        } catch (SQLException e) {
+            System.out.println("Error al insertar el producto: " + e.getMessage()); //mensaje de error por si falla algo
+            return null;
+        }
+    }
+
+    // igual que upsertProduct pero con una conexion ya abierta
+    static Upsert upsertProduct(Connection conn, String nombre, int cantidad, long centavos) throws SQLException {
+        String sql = "INSERT INTO PRODUCTOS(NOMBRE, CANTIDAD, PRECIO_CENTAVOS) VALUES (?,?,?) "
+                + "ON CONFLICT(" + NOMBRE_NORMALIZADO + ") DO NOTHING RETURNING ID";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, nombre);
+            pstmt.setInt(2, cantidad);
+            pstmt.setLong(3, centavos);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Upsert(rs.getInt(1), true); // se inserto: RETURNING trae el ID nuevo
+                }
+            }
+        }
+        // hubo conflicto: buscamos el ID del que ya existe (por el indice, no recorre la tabla)
+        try (PreparedStatement buscar = conn.prepareStatement(
+                "SELECT ID FROM PRODUCTOS WHERE " + NOMBRE_NORMALIZADO + " = lower(trim(?))")) {
+            buscar.setString(1, nombre);
+            try (ResultSet rs = buscar.executeQuery()) {
+                if (rs.next()) {
+                    return new Upsert(rs.getInt(1), false);
+                }
+            }
+        }
+        throw new SQLException("No se pudo insertar ni encontrar el producto '" + nombre + "'");
+    }
+
+    // busca productos por nombre con el indice de texto completo (FTS5). cada palabra del texto busca palabras
+    // del nombre que empiecen igual ("torn 3/8" encuentra "Tornillo 3/8 pulgada"), sin importar mayusculas ni
+    // acentos, y los resultados vienen ordenados por relevancia (bm25). no depende de lo que haya en memoria,
+    // asi que sirve para catalogos de cualquier tamano
+    public static List<Producto> searchProducts(String texto, int limite) throws SQLException {
+        String consulta = consultaFts(texto);
+        if (consulta.isEmpty())
+            return List.of();
+        String sql;
+        List<Object> parametros;
+        if (Migraciones.aplicada(Migraciones.TEXTO_COMPLETO)) {
+            sql = "SELECT p.ID, p.NOMBRE, p.CANTIDAD, p.PRECIO_CENTAVOS FROM PRODUCTOS_FTS f "
+                    + "JOIN PRODUCTOS p ON p.ID = f.rowid WHERE PRODUCTOS_FTS MATCH ? ORDER BY f.rank LIMIT ?";
+            parametros = List.of(consulta);
+        } else { // el indice todavia se esta construyendo en segundo plano: sin relevancia, por nombre
+            var c = Condicion.textoSinIndice(texto);
+            sql = "SELECT ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS FROM PRODUCTOS WHERE " + c.sql()
+                    + " ORDER BY " + NOMBRE_NORMALIZADO + " LIMIT ?";
+            parametros = c.parametros();
+        }
+        List<Producto> out = new ArrayList<>();
+        try (var lease = ConnectionPool.get().lectura();
+                PreparedStatement pstmt = lease.conn().prepareStatement(sql)) {
+            ponerParametros(pstmt, parametros, 1);
+            pstmt.setInt(parametros.size() + 1, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    out.add(leerProducto(rs));
+                }
+            }
+        }
+        return out;
+    }
+
+    // convierte lo que escribe el usuario en una consulta FTS5 segura: solo letras y numeros, cada palabra
+    // entre comillas y con * (prefijo); las palabras se combinan con AND
+    static String consultaFts(String texto) {
+        StringBuilder sb = new StringBuilder();
+        for (String palabra : palabras(texto)) {
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append('"').append(palabra).append("\"*");
+        }
+        return sb.toString();
+    }
+
+    // las palabras del texto: solo letras y numeros
+    private static List<String> palabras(String texto) {
+        List<String> out = new ArrayList<>();
+        for (String palabra : texto.split("[^\\p{L}\\p{N}]+")) {
+            if (!palabra.isEmpty())
+                out.add(palabra);
+        }
+        return out;
+    }
+
+    // totales del inventario calculados dentro de sqlite; como el precio es entero la suma es exacta
+    public record Totales(long productos, long unidades, long centavos) {
+    }
+
+    public static Totales totales() throws SQLException {
+        String sql = "SELECT COUNT(*), COALESCE(SUM(CANTIDAD), 0), COALESCE(SUM(CANTIDAD * PRECIO_CENTAVOS), 0) "
+                + "FROM PRODUCTOS";
+        try (var lease = ConnectionPool.get().lectura();
+                Statement st = lease.conn().createStatement();
+                ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return new Totales(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+        }
+    }
+
    public static boolean productExist(String nombre) { //metodo para verificar si un producto ya existe por su nombre
-        String sql = "SELECT 1 FROM PRODUCTOS WHERE NOMBRE = ? LIMIT 1"; //consulta sql para buscar el nombre del producto
-    
-    String URL = "jdbc:sqlite:inventario.db"; //ruta para la base de datos
+        String sql = "SELECT 1 FROM PRODUCTOS WHERE " + NOMBRE_NORMALIZADO + " = lower(trim(?)) LIMIT 1"; //consulta sql para buscar el nombre del producto (usa el indice)
         
- try (Connection conn = DriverManager.getConnection(URL); //esperando conexion con la base de datos
-             PreparedStatement pstmt = conn.prepareStatement(sql)) { //preparamos la sentencia sql
+ try (var lease = ConnectionPool.get().lectura(); //pedimos una conexion de lectura al pool
+             PreparedStatement pstmt = lease.conn().prepareStatement(sql)) { //preparamos la sentencia sql
                 pstmt.setString(1, nombre);
   try(ResultSet res =  pstmt.executeQuery()) {//ejecutamos la consulta
    return res.next(); //si existe alguna lo retornamos como verdadero
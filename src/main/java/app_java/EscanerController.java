@@ -0,0 +1,42 @@
+package app_java;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+// recibe los codigos que lee el escaner web (app_js/scanner.js manda POST /api/id con {"id": "..."}) y se
+// los pasa a las ventanas abiertas para que seleccionen el producto. el codigo se pasa como texto: si no
+// es un ID que exista, la ventana busca el nombre mas parecido
+@RestController
+public class EscanerController {
+
+    public record Lectura(String id) {
+    }
+
+    // ventanas que quieren enterarse de cada lectura; se avisa desde el hilo del servidor
+    private static final List<Consumer<String>> OYENTES = new CopyOnWriteArrayList<>();
+
+    static void alEscanear(Consumer<String> oyente) {
+        OYENTES.add(oyente);
+    }
+
+    static void quitar(Consumer<String> oyente) {
+        OYENTES.remove(oyente);
+    }
+
+    @PostMapping("/api/id")
+    public ResponseEntity<String> recibir(@RequestBody Lectura lectura) {
+        String codigo = lectura.id() == null ? "" : lectura.id().trim();
+        if (codigo.isEmpty())
+            return ResponseEntity.badRequest().body("Codigo vacio");
+        for (Consumer<String> o : OYENTES) {
+            o.accept(codigo);
+        }
+        return ResponseEntity.ok("ID recibido: " + codigo);
+    }
+}
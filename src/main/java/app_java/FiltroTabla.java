@@ -0,0 +1,228 @@
+package app_java;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.swing.JTable;
+import javax.swing.RowFilter;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+// filtro de la tabla de inventario sin trabar la interfaz al escribir:
+// - el texto es una consulta (ver ConsultaFiltro): "tornillo", "cantidad<5 precio>=100 nombre:llave"
+// - espera a que se deje de teclear un momento (no filtra por cada tecla)
+// - busca en otro hilo sobre la foto inmutable del modelo (InventarioSnapshot)
+// - si llega otra busqueda, la anterior se abandona y su resultado se descarta
+// - el resultado se le da al sorter ya calculado (los IDs que coinciden), sin regex por fila
+// - si la consulta nueva es mas estricta que la anterior ("torn" -> "tornillo", o se agrega cantidad<5)
+//   solo se revisan las filas que ya coincidian, porque las demas no pueden coincidir
+// - los resultados de la misma foto se guardan por consulta normalizada (borrar una letra es inmediato)
+// - si un texto solo no coincide con nada se muestran los nombres parecidos ("tornilo" -> "tornillo"),
+//   con el indice de trigramas del modelo
+final class FiltroTabla {
+    private static final int ESPERA_MS = 150;
+    private static final int MAX_RESULTADOS = 16;
+    private static final int MAX_PARECIDOS = 50;
+    private static final double PARECIDO_MINIMO = 0.3;
+
+    private final InventarioModel model;
+    private final TableRowSorter<TableModel> sorter;
+    private final Timer espera;
+    private final Consumer<String> aviso; // para decir que se muestran parecidos y no coincidencias
+    private ConsultaFiltro consulta;
+    private int generacion; // solo se toca en el hilo de swing
+    private SwingWorker<BitSet, Void> enCurso;
+    private boolean modeloCambio; // hubo cambios en la tabla desde la ultima busqueda
+
+    // resultado anterior, para reducirlo si el texto nuevo lo extiende
+    private ConsultaFiltro ultimaConsulta;
+    private InventarioSnapshot ultimaFoto;
+    private BitSet ultimasFilas;
+
+    // resultados por consulta normalizada; solo valen para fotoResultados
+    private InventarioSnapshot fotoResultados;
+    private final Map<String, BitSet> resultados = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BitSet> e) {
+            return size() > MAX_RESULTADOS;
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    FiltroTabla(JTable table, InventarioModel model, Consumer<String> aviso) {
+        this.model = model;
+        this.aviso = aviso;
+        if (!(table.getRowSorter() instanceof TableRowSorter)) {
+            var nuevo = new TableRowSorter<TableModel>(table.getModel());
+            nuevo.setComparator(1, model.comparadorNombres());
+            table.setRowSorter(nuevo);
+        }
+        this.sorter = (TableRowSorter<TableModel>) table.getRowSorter();
+        espera = new Timer(ESPERA_MS, e -> buscar());
+        espera.setRepeats(false);
+        // si la tabla cambia con un filtro puesto se vuelve a buscar (las filas nuevas o editadas)
+        model.addTableModelListener(e -> {
+            modeloCambio = true;
+            if (consulta != null)
+                espera.restart();
+        });
+    }
+
+    // el texto del filtro cambio; se busca cuando pase el tiempo de espera sin otro cambio.
+    // si la consulta no se entiende se busca el texto completo en el nombre y se regresa el error
+    // (para mostrarlo), si no regresa null
+    String programar(String nuevo) {
+        String error = null;
+        ConsultaFiltro c;
+        try {
+            c = ConsultaFiltro.compilar(nuevo);
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage();
+            c = ConsultaFiltro.compilar("\"" + nuevo.trim().replace("\"", "") + "\"");
+        }
+        if (c.vacia()) { // quitar el filtro es inmediato
+            consulta = null;
+            espera.stop();
+            cancelar();
+            sorter.setRowFilter(null);
+            return error;
+        }
+        consulta = c;
+        espera.restart();
+        return error;
+    }
+
+    private void cancelar() {
+        generacion++;
+        if (enCurso != null)
+            enCurso.cancel(false); // el hilo lo nota en su ciclo y se detiene
+        enCurso = null;
+    }
+
+    private void buscar() {
+        cancelar();
+        int gen = generacion;
+        ConsultaFiltro q = consulta;
+        if (q == null)
+            return;
+        InventarioSnapshot foto = model.snapshotAlDia();
+        modeloCambio = false;
+        if (foto != fotoResultados) {
+            resultados.clear();
+            fotoResultados = foto;
+        }
+        BitSet guardado = resultados.get(q.normalizada());
+        if (guardado != null) {
+            terminar(q, foto, guardado);
+            return;
+        }
+        // solo se puede reducir el resultado anterior si es de la misma foto y la consulta es mas estricta
+        BitSet base = foto == ultimaFoto && ultimaConsulta != null && q.implica(ultimaConsulta)
+                ? ultimasFilas
+                : null;
+
+        enCurso = new SwingWorker<BitSet, Void>() {
+            @Override
+            protected BitSet doInBackground() {
+                BitSet filas = new BitSet(foto.size());
+                if (base != null) {
+                    int revisadas = 0;
+                    for (int i = base.nextSetBit(0); i >= 0; i = base.nextSetBit(i + 1)) {
+                        if ((++revisadas & 0xFFF) == 0 && isCancelled())
+                            return null;
+                        if (q.coincide(foto, i))
+                            filas.set(i);
+                    }
+                } else {
+                    for (int i = 0; i < foto.size(); i++) {
+                        if ((i & 0xFFF) == 0 && isCancelled())
+                            return null;
+                        if (q.coincide(foto, i))
+                            filas.set(i);
+                    }
+                }
+                return filas;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || gen != generacion)
+                    return; // llego otra busqueda mientras tanto
+                BitSet filas;
+                try {
+                    filas = get();
+                } catch (Exception e) {
+                    System.out.println("No se pudo filtrar: " + e.getMessage());
+                    return;
+                }
+                enCurso = null;
+                if (foto == fotoResultados)
+                    resultados.put(q.normalizada(), filas);
+                terminar(q, foto, filas);
+            }
+        };
+        enCurso.execute();
+    }
+
+    private void terminar(ConsultaFiltro q, InventarioSnapshot foto, BitSet filas) {
+        ultimaConsulta = q;
+        ultimaFoto = foto;
+        ultimasFilas = filas;
+        String texto = filas.isEmpty() ? q.soloTexto() : null;
+        if (texto != null) {
+            aplicarParecidos(texto);
+        } else {
+            aplicar(foto, filas);
+        }
+        if (modeloCambio) // la tabla cambio mientras se buscaba
+            espera.restart();
+    }
+
+    // el sorter pregunta fila por fila; se contesta con el ID de la fila (no con su posicion) para que el
+    // resultado siga bien aunque se borren filas antes de que termine la siguiente busqueda
+    private void aplicar(InventarioSnapshot foto, BitSet filas) {
+        IntIntMap ids = new IntIntMap(filas.cardinality());
+        for (int i = filas.nextSetBit(0); i >= 0; i = filas.nextSetBit(i + 1)) {
+            ids.put(foto.id(i), 0);
+        }
+        aplicar(ids);
+    }
+
+    private void aplicarParecidos(String texto) {
+        var parecidos = model.parecidos(texto, MAX_PARECIDOS, PARECIDO_MINIMO);
+        IntIntMap ids = new IntIntMap(parecidos.length);
+        for (var r : parecidos) {
+            ids.put(r.id(), 0);
+        }
+        aplicar(ids);
+        if (parecidos.length > 0 && model.parecidosListos())
+            aviso.accept("Sin coincidencias exactas: se muestran " + parecidos.length + " nombres parecidos");
+        else if (!model.parecidosListos())
+            aviso.accept("Sin coincidencias exactas; la busqueda de nombres parecidos todavia se esta preparando");
+    }
+
+    private void aplicar(IntIntMap ids) {
+        sorter.setRowFilter(new RowFilter<TableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+                return ids.get(model.id(entry.getIdentifier())) != IntIntMap.NO_ESTA;
+            }
+        });
+    }
+
+    // lo mismo que nombre.toLowerCase().contains(q.toLowerCase()) pero sin crear Strings por fila
+    static boolean contieneSinMayusculas(String nombre, String q) {
+        if (nombre == null)
+            return false;
+        int n = q.length();
+        for (int i = 0, fin = nombre.length() - n; i <= fin; i++) {
+            if (nombre.regionMatches(true, i, q, 0, n))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,175 @@
+package app_java;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+// indice invertido de trigramas para buscar nombres aunque esten mal escritos ("tornilo", "martiyo").
+// cada nombre se parte en grupos de tres letras ("  t", " to", "tor", "orn", ...) y por cada grupo se guarda
+// la lista de nombres que lo tienen. al buscar solo se cuentan los grupos en comun con los nombres que
+// comparten alguno, y se ordenan por parecido (grupos en comun / grupos distintos entre los dos).
+// se mantiene al dia con add/update/remove del modelo; los nombres quitados solo se marcan y cuando son
+// muchos se reconstruye todo. no es seguro entre hilos: se usa en el hilo de swing
+final class IndiceTrigramas {
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    // una lista de "lugares" (no IDs): un lugar es un nombre indexado; si el producto cambia de nombre
+    // se usa un lugar nuevo y el viejo queda muerto hasta reconstruir
+    private static final class Lista {
+        int[] lugares = new int[4];
+        int n;
+
+        void add(int lugar) {
+            if (n == lugares.length)
+                lugares = Arrays.copyOf(lugares, n * 2);
+            lugares[n++] = lugar;
+        }
+    }
+
+    record Resultado(int id, String nombre, double parecido) {
+    }
+
+    private final Map<Long, Lista> listas = new HashMap<>();
+    private final IntIntMap lugarPorId = new IntIntMap();
+    private int[] ids = new int[16];
+    private String[] nombres = new String[16]; // null = lugar muerto
+    private short[] trigramas = new short[16]; // cuantos trigramas distintos tiene cada nombre
+    private int lugares;
+    private int muertos;
+    private int[] cuenta = new int[16]; // contador por lugar al buscar; se reutiliza
+
+    void agregar(int id, String nombre) {
+        quitar(id);
+        if (lugares == ids.length) {
+            int c = lugares * 2;
+            ids = Arrays.copyOf(ids, c);
+            nombres = Arrays.copyOf(nombres, c);
+            trigramas = Arrays.copyOf(trigramas, c);
+            cuenta = Arrays.copyOf(cuenta, c);
+        }
+        int lugar = lugares++;
+        ids[lugar] = id;
+        nombres[lugar] = nombre == null ? "" : nombre;
+        long[] ts = trigramas(nombres[lugar]);
+        trigramas[lugar] = (short) Math.min(ts.length, Short.MAX_VALUE);
+        for (long t : ts) {
+            listas.computeIfAbsent(t, k -> new Lista()).add(lugar);
+        }
+        lugarPorId.put(id, lugar);
+    }
+
+    void quitar(int id) {
+        int lugar = lugarPorId.remove(id);
+        if (lugar == IntIntMap.NO_ESTA)
+            return;
+        nombres[lugar] = null;
+        // con mas muertos que vivos las listas ya son mas basura que datos: se rehace todo
+        if (++muertos > 1024 && muertos > lugares - muertos)
+            compactar();
+    }
+
+    void clear() {
+        listas.clear();
+        lugarPorId.clear(16);
+        lugares = 0;
+        muertos = 0;
+    }
+
+    int size() {
+        return lugares - muertos;
+    }
+
+    // los k nombres mas parecidos al texto, del mas parecido al menos; solo los que pasan el minimo
+    Resultado[] buscar(String texto, int k, double minimo) {
+        long[] qs = trigramas(texto);
+        if (qs.length == 0 || k <= 0)
+            return new Resultado[0];
+        int[] tocados = new int[64];
+        int nTocados = 0;
+        for (long t : qs) {
+            Lista l = listas.get(t);
+            if (l == null)
+                continue;
+            for (int i = 0; i < l.n; i++) {
+                int lugar = l.lugares[i];
+                if (cuenta[lugar]++ == 0) {
+                    if (nTocados == tocados.length)
+                        tocados = Arrays.copyOf(tocados, nTocados * 2);
+                    tocados[nTocados++] = lugar;
+                }
+            }
+        }
+        // los k mejores con un monticulo de minimos: el peor de los que van queda arriba
+        PriorityQueue<Resultado> mejores = new PriorityQueue<>(k + 1,
+                (a, b) -> Double.compare(a.parecido(), b.parecido()));
+        for (int j = 0; j < nTocados; j++) {
+            int lugar = tocados[j];
+            int comunes = cuenta[lugar];
+            cuenta[lugar] = 0; // se deja en cero para la siguiente busqueda
+            if (nombres[lugar] == null)
+                continue;
+            double parecido = (double) comunes / (qs.length + trigramas[lugar] - comunes); // Jaccard
+            if (parecido < minimo)
+                continue;
+            if (mejores.size() < k) {
+                mejores.add(new Resultado(ids[lugar], nombres[lugar], parecido));
+            } else if (parecido > mejores.peek().parecido()) {
+                mejores.poll();
+                mejores.add(new Resultado(ids[lugar], nombres[lugar], parecido));
+            }
+        }
+        Resultado[] out = new Resultado[mejores.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = mejores.poll();
+        }
+        return out;
+    }
+
+    private void compactar() {
+        int n = lugares;
+        int[] viejosIds = Arrays.copyOf(ids, n);
+        String[] viejosNombres = Arrays.copyOf(nombres, n);
+        clear();
+        for (int i = 0; i < n; i++) {
+            if (viejosNombres[i] != null)
+                agregar(viejosIds[i], viejosNombres[i]);
+        }
+    }
+
+    // trigramas distintos del texto: minusculas, sin acentos, cada palabra con dos espacios antes y uno
+    // despues (asi el inicio de la palabra pesa mas, como en pg_trgm). cada trigrama se guarda en un long
+    static long[] trigramas(String texto) {
+        String s = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        long[] out = new long[s.length() * 3 + 3];
+        int n = 0;
+        int i = 0;
+        while (i < s.length()) {
+            while (i < s.length() && !Character.isLetterOrDigit(s.charAt(i)))
+                i++;
+            int inicio = i;
+            while (i < s.length() && Character.isLetterOrDigit(s.charAt(i)))
+                i++;
+            if (i == inicio)
+                break;
+            char a = ' ', b = ' ';
+            for (int j = inicio; j <= i; j++) {
+                char c = j < i ? s.charAt(j) : ' ';
+                out[n++] = ((long) a << 32) | ((long) b << 16) | c;
+                a = b;
+                b = c;
+            }
+        }
+        Arrays.sort(out, 0, n);
+        int distintos = 0;
+        for (int j = 0; j < n; j++) {
+            if (distintos == 0 || out[j] != out[distintos - 1])
+                out[distintos++] = out[j];
+        }
+        return Arrays.copyOf(out, distintos);
+    }
+}
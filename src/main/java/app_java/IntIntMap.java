@@ -0,0 +1,127 @@
+package app_java;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+// mapa int -> int con direccionamiento abierto (sondeo lineal) sobre dos arreglos primitivos: sin Integer
+// ni nodos por entrada como HashMap<Integer, Integer>. los valores no pueden ser negativos (-1 marca
+// lugar vacio). al borrar se recorren las entradas siguientes hacia atras, asi no quedan lapidas
+final class IntIntMap {
+    static final int NO_ESTA = -1;
+
+    private int[] llaves;
+    private int[] valores;
+    private int size;
+
+    IntIntMap() {
+        this(16);
+    }
+
+    IntIntMap(int esperados) {
+        int c = Integer.highestOneBit(Math.max(esperados, 4) * 2 - 1) << 1; // potencia de 2, carga <= 1/2
+        llaves = new int[c];
+        valores = new int[c];
+        Arrays.fill(valores, NO_ESTA);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int llave) {
+        int mask = llaves.length - 1;
+        for (int i = mezclar(llave) & mask;; i = (i + 1) & mask) {
+            if (valores[i] == NO_ESTA)
+                return NO_ESTA;
+            if (llaves[i] == llave)
+                return valores[i];
+        }
+    }
+
+    // guarda el valor y regresa el anterior (o NO_ESTA)
+    int put(int llave, int valor) {
+        if (valor < 0)
+            throw new IllegalArgumentException("Valor negativo: " + valor);
+        int mask = llaves.length - 1;
+        int i = mezclar(llave) & mask;
+        for (; valores[i] != NO_ESTA; i = (i + 1) & mask) {
+            if (llaves[i] == llave) {
+                int anterior = valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+        }
+        llaves[i] = llave;
+        valores[i] = valor;
+        if (++size * 2 > llaves.length)
+            rehacer(llaves.length * 2);
+        return NO_ESTA;
+    }
+
+    // quita la llave y regresa su valor (o NO_ESTA)
+    int remove(int llave) {
+        int mask = llaves.length - 1;
+        int i = mezclar(llave) & mask;
+        for (;; i = (i + 1) & mask) {
+            if (valores[i] == NO_ESTA)
+                return NO_ESTA;
+            if (llaves[i] == llave)
+                break;
+        }
+        int anterior = valores[i];
+        // borrado hacia atras: las entradas que chocaron despues de i se mueven para no romper la busqueda
+        int hueco = i;
+        for (int j = (i + 1) & mask; valores[j] != NO_ESTA; j = (j + 1) & mask) {
+            int ideal = mezclar(llaves[j]) & mask;
+            if (((j - ideal) & mask) >= ((j - hueco) & mask)) {
+                llaves[hueco] = llaves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        valores[hueco] = NO_ESTA;
+        size--;
+        return anterior;
+    }
+
+    void clear(int esperados) {
+        int c = Integer.highestOneBit(Math.max(esperados, 4) * 2 - 1) << 1;
+        if (c != llaves.length) {
+            llaves = new int[c];
+            valores = new int[c];
+        }
+        Arrays.fill(valores, NO_ESTA);
+        size = 0;
+    }
+
+    // cambia cada valor v por f(v) sin tocar las llaves (para recalcular las filas despues de compactar)
+    void reemplazarValores(IntUnaryOperator f) {
+        for (int i = 0; i < valores.length; i++) {
+            if (valores[i] != NO_ESTA)
+                valores[i] = f.applyAsInt(valores[i]);
+        }
+    }
+
+    private void rehacer(int capacidad) {
+        int[] viejasLlaves = llaves, viejosValores = valores;
+        llaves = new int[capacidad];
+        valores = new int[capacidad];
+        Arrays.fill(valores, NO_ESTA);
+        int mask = capacidad - 1;
+        for (int k = 0; k < viejasLlaves.length; k++) {
+            if (viejosValores[k] == NO_ESTA)
+                continue;
+            int i = mezclar(viejasLlaves[k]) & mask;
+            while (valores[i] != NO_ESTA)
+                i = (i + 1) & mask;
+            llaves[i] = viejasLlaves[k];
+            valores[i] = viejosValores[k];
+        }
+    }
+
+    // IDs seguidos (1, 2, 3...) caerian en lugares seguidos y formarian racimos largos; se mezclan los bits
+    private static int mezclar(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
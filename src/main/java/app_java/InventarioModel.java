@@ -0,0 +1,628 @@
+package app_java;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+// ======== TableModel ========
+// antes cada vista tenia su propia copia de esta clase; ahora UiInventario la usa cargando la base de datos
+// y UiGeneral (carrito) la usa vacia
+class InventarioModel extends AbstractTableModel { // le hereda toda la funcionalidad basica
+    private final String[] cols = { "ID", "Nombre", "Cantidad", "Precio", "Subtotal" }; // se crean las columnas
+    private final Class<?>[] types = { Integer.class, String.class, Integer.class, BigDecimal.class, // su tipo de
+                                                                                                     // dato
+            BigDecimal.class };
+    // los datos por columnas (obtenidos de la base de datos de sqlite o vacios); ver ColumnarStore
+    private final ColumnarStore data = new ColumnarStore();
+
+    // ======== Cambios pendientes de guardar ========
+    // filas (por indice) agregadas o modificadas desde el ultimo guardado (ver tomarPendientes); los bits se
+    // recorren al borrar filas
+    private final BitSet insertadas = new BitSet();
+    private final BitSet actualizadas = new BitSet();
+    private final Set<Integer> borrados = new HashSet<>(); // IDs borrados desde el ultimo guardado (lapidas)
+    private boolean reemplazoCompleto; // setAll cambia todo: el siguiente guardado compara la tabla completa
+
+    // ======== Indice ID -> fila ========
+    // el mapa guarda para cada ID una "posicion" que no cambia al borrar filas de arriba. la fila real es la
+    // posicion menos cuantas filas borradas habia antes (huecos, ordenados; se cuentan con busqueda binaria).
+    // asi borrar no obliga a rehacer el indice: cuando hay muchos huecos se compacta todo de una vez
+    private final IntIntMap posPorId = new IntIntMap();
+    private int[] huecos = new int[16];
+    private int nHuecos;
+    private int siguientePos; // posicion que recibe la siguiente fila agregada
+    private boolean hayDuplicados; // un ID en dos filas: el indice tiene la primera, las demas se buscan a mano
+
+    // ======== Busqueda aproximada ========
+    // indice de trigramas de los nombres. con un millon de nombres tarda segundos en armarse, asi que se
+    // arma en otro hilo desde una foto (el inventario de la base apenas se carga, los demas la primera vez
+    // que se busca algo parecido). los cambios que llegan mientras tanto se guardan y se le aplican al
+    // terminar; despues se actualiza con cada cambio
+    private IndiceTrigramas trigramas;
+    private SwingWorker<IndiceTrigramas, Void> armando;
+    private final List<CambioNombre> cambiosMientrasSeArma = new ArrayList<>();
+
+    private record CambioNombre(int id, String nombre) { // nombre null: se quito
+    }
+
+    // los productos con nombre mas parecido al texto (aunque tenga errores de dedo), del mejor al peor.
+    // mientras el indice se arma solo encuentra nombres iguales (sin importar mayusculas ni espacios)
+    public IndiceTrigramas.Resultado[] parecidos(String texto, int k, double minimo) {
+        if (trigramas != null)
+            return trigramas.buscar(texto, k, minimo);
+        prepararParecidos();
+        String t = texto.trim();
+        List<IndiceTrigramas.Resultado> iguales = new ArrayList<>();
+        for (int i = 0; i < data.size() && iguales.size() < k; i++) {
+            String nombre = data.nombre(i);
+            if (nombre != null && nombre.trim().equalsIgnoreCase(t))
+                iguales.add(new IndiceTrigramas.Resultado(data.id(i), nombre, 1.0));
+        }
+        return iguales.toArray(IndiceTrigramas.Resultado[]::new);
+    }
+
+    // false mientras el indice de trigramas se arma (parecidos solo encuentra nombres iguales)
+    public boolean parecidosListos() {
+        return trigramas != null;
+    }
+
+    // empieza a armar el indice de trigramas en otro hilo si no existe ni se esta armando
+    public void prepararParecidos() {
+        if (trigramas != null || armando != null)
+            return;
+        InventarioSnapshot foto = snapshotAlDia();
+        cambiosMientrasSeArma.clear();
+        armando = new SwingWorker<>() {
+            private long inicio;
+
+            @Override
+            protected IndiceTrigramas doInBackground() {
+                inicio = System.nanoTime();
+                var indice = new IndiceTrigramas();
+                for (int i = 0; i < foto.size(); i++) {
+                    if ((i & 0xFFFF) == 0 && isCancelled())
+                        return null;
+                    indice.agregar(foto.id(i), foto.nombre(i));
+                }
+                return indice;
+            }
+
+            @Override
+            protected void done() {
+                if (armando != this || isCancelled())
+                    return; // setAll lo reemplazo por otro
+                armando = null;
+                try {
+                    var indice = get();
+                    for (var c : cambiosMientrasSeArma) {
+                        if (c.nombre() == null)
+                            indice.quitar(c.id());
+                        else
+                            indice.agregar(c.id(), c.nombre());
+                    }
+                    trigramas = indice;
+                    System.out.println("Indice de trigramas: " + indice.size() + " nombres en "
+                            + (System.nanoTime() - inicio) / 1_000_000 + " ms (en segundo plano)");
+                } catch (Exception e) {
+                    e.printStackTrace(); // se vuelve a intentar en la siguiente busqueda
+                } finally {
+                    cambiosMientrasSeArma.clear();
+                }
+            }
+        };
+        armando.execute();
+    }
+
+    private void nombreAgregado(int id, String nombre) {
+        if (trigramas != null)
+            trigramas.agregar(id, nombre);
+        else if (armando != null)
+            cambiosMientrasSeArma.add(new CambioNombre(id, nombre));
+    }
+
+    private void nombreQuitado(int id) {
+        if (trigramas != null)
+            trigramas.quitar(id);
+        else if (armando != null)
+            cambiosMientrasSeArma.add(new CambioNombre(id, null));
+    }
+
+    // orden alfabetico en español para la columna Nombre del sorter (el de String.compareTo pone "Ñ" y las
+    // vocales con acento despues de la "z"); usa claves precalculadas por nombre (ver ColumnarStore)
+    public Comparator<String> comparadorNombres() {
+        return data::compararNombres;
+    }
+
+    // ======== Totales ========
+    // se ajustan con la diferencia en cada add/update/remove, asi la barra de estado no recorre la tabla;
+    // despues de cargas completas (base de datos, CSV) se recalculan desde cero
+    private long totalUnidades;
+    private long totalCentavos;
+
+    // ======== Fotos para otros hilos ========
+    // la tabla solo se cambia en el hilo de swing; para los demas hilos se publica una foto inmutable
+    // (InventarioSnapshot) despues de cada cambio. copiar las columnas es O(n), asi que los cambios seguidos
+    // (todos los de un mismo evento, un lote de la importacion) se juntan en una sola publicacion al final del
+    // turno del hilo de swing: los lectores nunca ven una foto con mas atraso que eso
+    private final AtomicReference<InventarioSnapshot> snapshot = new AtomicReference<>(InventarioSnapshot.VACIO);
+    private final boolean publicaGlobal; // el inventario de la base se publica para REST y exportaciones
+    private boolean publicacionPendiente; // ya hay un invokeLater(publicar) en camino
+    private long version;
+    private long publicaciones;
+    private long publicarNanosTotal;
+    private long publicarNanosMax;
+    private final List<WeakReference<InventarioSnapshot>> versiones = new ArrayList<>(); // para medir cuantas siguen vivas
+
+    InventarioModel(boolean desdeBaseDatos) {
+        if (desdeBaseDatos)
+            ProductListSQL(data);
+        publicaGlobal = desdeBaseDatos;
+        reconstruirIndice();
+        reconciliarTotales();
+        publicar();
+        if (publicaGlobal)
+            SwingUtilities.invokeLater(this::prepararParecidos); // el escaner lo usa desde el primer codigo
+    }
+
+    private static void ProductListSQL(ColumnarStore destino) { // cada fila de la tabla se guarda en las columnas
+        Database.CrearDB(); // instanciamos la base de datos para que se inicialize
+
+        try { // recorremos la tabla por paginas; cada pagina devuelve su conexion al pool al terminar
+            Database.forEachProduct(Database.PAGINA_POR_DEFECTO, destino::add);
+        } catch (Exception e) { // en caso de que no exista manda error
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return data.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return cols.length;
+    }
+
+    @Override
+    public String getColumnName(int c) {
+        return cols[c];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int c) {
+        return types[c];
+    }
+
+    @Override
+    public boolean isCellEditable(int r, int c) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        return switch (col) { // se lee solo la columna pedida, sin crear el Producto completo
+            case 0 -> data.id(row);
+            case 1 -> data.nombre(row);
+            case 2 -> data.cantidad(row);
+            case 3 -> data.precio(row); // BigDecimal en cache por fila: pintar y ordenar no crea objetos
+            case 4 -> data.subtotal(row);
+            default -> "";
+        };
+    }
+
+    public Producto get(int row) {
+        return data.get(row); // una copia de la fila; para cambiarla hay que usar update
+    }
+
+    public void setAll(List<Producto> list) { // metodo de importacion
+        data.clear(); // limpia los datos
+        data.asegurarCapacidad(list.size());
+        for (Producto p : list)
+            data.add(p); // copia los datos del csv
+        reconstruirIndice();
+        reconciliarTotales();
+        // el indice (o el que se estaba armando) ya no sirve; si ya se usaba se arma otro con los datos nuevos
+        boolean seUsaba = trigramas != null || armando != null;
+        trigramas = null;
+        if (armando != null)
+            armando.cancel(false);
+        armando = null;
+        cambiosMientrasSeArma.clear();
+        limpiarPendientes();
+        reemplazoCompleto = true;
+        cambio(); // ya no sabemos que cambio fila por fila
+        fireTableDataChanged(); // le avisa a la tabla anterior que sus datos han cambiado
+        if (seUsaba)
+            prepararParecidos();
+    }
+
+    public void add(Producto p) { // funcion para agregar un producto
+        data.add(p); // los datos son pasados como parametros al objeto de Producto que su instancia
+                     // es p
+        int idx = data.size() - 1; // le dice en donde se agregara la nueva fila, 1 antes de la que a esta
+        indexar(p.id, siguientePos++);
+        nombreAgregado(p.id, p.nombre);
+        sumar(p.cantidad, p.subtotalCentavos());
+        cambio();
+        insertadas.set(idx);
+        borrados.remove(p.id); // si se borro y se vuelve a crear con el mismo ID ya no es un borrado
+        fireTableRowsInserted(idx, idx); // le avisa a la tabla vieja que fue insertado una nueva fila
+    }
+
+    // varias filas al final con un solo aviso a la tabla (la importacion de CSV agrega por lotes; con un
+    // evento por fila el sorter y la tabla se recalcularian miles de veces)
+    public void agregarTodos(List<Producto> lote) {
+        if (lote.isEmpty())
+            return;
+        int desde = anexar(lote);
+        insertadas.set(desde, data.size());
+        cambio();
+        fireTableRowsInserted(desde, data.size() - 1);
+    }
+
+    // cambios de una importacion que ya se escribieron en la base (ver CsvImporter): las filas cambiadas se
+    // buscan por ID y las nuevas van al final, con un aviso a la tabla para cada grupo. no quedan pendientes
+    // de guardar (las que ya lo estaban por ediciones de antes se quedan asi)
+    public void fusionar(List<Producto> cambiados, List<Producto> nuevos) {
+        int primera = Integer.MAX_VALUE, ultima = -1;
+        for (Producto p : cambiados) {
+            int row = indexOfId(p.id);
+            if (row < 0)
+                continue;
+            if (!data.nombre(row).equals(p.nombre))
+                nombreAgregado(p.id, p.nombre); // agregar reemplaza el nombre anterior del mismo ID
+            sumar(-data.cantidad(row), -data.subtotalCentavos(row));
+            sumar(p.cantidad, p.subtotalCentavos());
+            data.set(row, p);
+            primera = Math.min(primera, row);
+            ultima = Math.max(ultima, row);
+        }
+        if (ultima >= 0)
+            fireTableRowsUpdated(primera, ultima);
+        if (!nuevos.isEmpty()) {
+            int desde = anexar(nuevos);
+            fireTableRowsInserted(desde, data.size() - 1);
+        }
+        if (ultima >= 0 || !nuevos.isEmpty())
+            cambio();
+    }
+
+    // agrega las filas al final (columnas, indice, trigramas y totales) sin avisar a la tabla; regresa la
+    // primera fila agregada
+    private int anexar(List<Producto> lote) {
+        int desde = data.size();
+        data.asegurarCapacidad(desde + lote.size());
+        for (Producto p : lote) {
+            data.add(p);
+            indexar(p.id, siguientePos++);
+            nombreAgregado(p.id, p.nombre);
+            sumar(p.cantidad, p.subtotalCentavos());
+            borrados.remove(p.id);
+        }
+        return desde;
+    }
+
+    // lo pendiente de guardar en este momento, para regresar a el con restaurar
+    public record EstadoGuardado(BitSet insertadas, BitSet actualizadas, Set<Integer> borrados,
+            boolean reemplazoCompleto) {
+    }
+
+    public EstadoGuardado estadoGuardado() {
+        return new EstadoGuardado((BitSet) insertadas.clone(), (BitSet) actualizadas.clone(), new HashSet<>(borrados),
+                reemplazoCompleto);
+    }
+
+    // regresa a una foto y a lo que estaba pendiente cuando se tomo (ej. una importacion que no se completo y
+    // cuya transaccion hizo rollback): como setAll, pero el siguiente guardado no compara la tabla completa
+    public void restaurar(InventarioSnapshot foto, EstadoGuardado estado) {
+        setAll(foto.productos());
+        limpiarPendientes();
+        insertadas.or(estado.insertadas());
+        actualizadas.or(estado.actualizadas());
+        borrados.addAll(estado.borrados());
+        reemplazoCompleto = estado.reemplazoCompleto();
+    }
+
+    // la base ya quedo igual que el modelo (se escribio por otro lado, ej. CsvImporter): nada pendiente
+    public void marcarGuardado() {
+        limpiarPendientes();
+    }
+
+    public void update(int row, Producto p) { // esta funcion actuliza los datos ocupa los parametros de fila y
+                                              // producto
+        int idAnterior = data.id(row);
+        if (idAnterior != p.id || !data.nombre(row).equals(p.nombre)) {
+            nombreQuitado(idAnterior);
+            nombreAgregado(p.id, p.nombre);
+        }
+        sumar(-data.cantidad(row), -data.subtotalCentavos(row));
+        sumar(p.cantidad, p.subtotalCentavos());
+        data.set(row, p); // cambia los datos enviando de parametros la fila(row) y el producto
+        if (idAnterior != p.id) {
+            borrados.add(idAnterior); // si cambio el ID, el viejo ya no existe
+            int pos = posicion(row);
+            if (posPorId.get(idAnterior) == pos)
+                posPorId.remove(idAnterior);
+            indexar(p.id, pos);
+        }
+        cambio();
+        if (!insertadas.get(row))
+            actualizadas.set(row);
+        fireTableRowsUpdated(row, row); // le avisa a la tabla vieja que fila fue actualizada
+    }
+
+    public void remove(int row) { // la funcion de borrar obtiene de parametro la fila
+        int id = data.id(row); // se obtiene el ID de la fila
+        // la base de datos ya no se toca aqui: la vista manda el borrado a la cola de escritura
+
+        int pos = posicion(row);
+        if (posPorId.get(id) == pos)
+            posPorId.remove(id);
+        agregarHueco(pos);
+        sumar(-data.cantidad(row), -data.subtotalCentavos(row));
+        nombreQuitado(id);
+        data.remove(row); // aqui se borra la fila del lado del frontend.
+        cambio();
+        borrados.add(id);
+        recorrer(insertadas, row);
+        recorrer(actualizadas, row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    // fila del modelo que tiene ese ID, o -1 si no esta (lo usa el escaner). no es O(1): el mapa si, pero
+    // pasar la posicion a fila es una busqueda binaria en los huecos (O(log huecos))
+    public int indexOfId(int id) {
+        int pos = posPorId.get(id);
+        if (pos != IntIntMap.NO_ESTA)
+            return fila(pos);
+        if (hayDuplicados) { // pudo quedar solo una copia que no esta en el indice
+            for (int i = 0; i < data.size(); i++) {
+                if (data.id(i) == id)
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    private void indexar(int id, int pos) {
+        if (posPorId.get(id) == IntIntMap.NO_ESTA)
+            posPorId.put(id, pos);
+        else
+            hayDuplicados = true;
+    }
+
+    private void reconstruirIndice() {
+        posPorId.clear(data.size());
+        nHuecos = 0;
+        siguientePos = data.size();
+        hayDuplicados = false;
+        for (int i = 0; i < data.size(); i++) {
+            indexar(data.id(i), i);
+        }
+    }
+
+    // fila actual de una posicion: se le restan los huecos que hay antes
+    private int fila(int pos) {
+        int i = Arrays.binarySearch(huecos, 0, nHuecos, pos);
+        return pos - (i >= 0 ? i : -i - 1);
+    }
+
+    // posicion de una fila actual (inverso de fila): se salta los huecos que quedan antes. antes del hueco i
+    // hay huecos[i] - i filas vivas (crece con i), asi que cuantos huecos saltar se busca con busqueda binaria
+    private int posicion(int row) {
+        int lo = 0, hi = nHuecos;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (huecos[m] - m <= row)
+                lo = m + 1;
+            else
+                hi = m;
+        }
+        return row + lo;
+    }
+
+    private void agregarHueco(int pos) {
+        int i = -Arrays.binarySearch(huecos, 0, nHuecos, pos) - 1;
+        if (nHuecos == huecos.length)
+            huecos = Arrays.copyOf(huecos, nHuecos * 2);
+        System.arraycopy(huecos, i, huecos, i + 1, nHuecos - i);
+        huecos[i] = pos;
+        nHuecos++;
+        // con muchos huecos cada busqueda cuesta mas; se recalculan todas las filas una vez (O(n)) y se
+        // empieza de cero. con el umbral proporcional al tamano el costo por borrado queda constante
+        if (nHuecos > Math.max(64, data.size() >>> 6)) {
+            posPorId.reemplazarValores(this::fila);
+            nHuecos = 0;
+            siguientePos = data.size() - 1; // remove todavia no quita la fila de data
+        }
+    }
+
+    // aqui se retorna toda la lista (solo lectura, los cambios van por add/update/remove). es una vista:
+    // cada Producto se crea al recorrerla, no se copia todo de una vez
+    public List<Producto> all() {
+        return vista;
+    }
+
+    private final List<Producto> vista = new Vista();
+
+    private final class Vista extends AbstractList<Producto> implements RandomAccess {
+        @Override
+        public Producto get(int i) {
+            return data.get(i);
+        }
+
+        @Override
+        public int size() {
+            return data.size();
+        }
+    }
+
+    // memoria estimada de las columnas contra la lista de objetos que se usaba antes
+    public ColumnarStore.Memoria memoria() {
+        return data.memoria();
+    }
+
+    // totales actuales en O(1): productos (filas), unidades y valor en centavos
+    public Database.Totales totales() {
+        return new Database.Totales(data.size(), totalUnidades, totalCentavos);
+    }
+
+    private void sumar(long unidades, long centavos) {
+        totalUnidades = Math.addExact(totalUnidades, unidades);
+        totalCentavos = Math.addExact(totalCentavos, centavos);
+    }
+
+    // recalcula recorriendo las columnas (O(n)); solo despues de cargar todo de una vez
+    private void reconciliarTotales() {
+        long unidades = 0, centavos = 0;
+        for (int i = 0; i < data.size(); i++) {
+            unidades += data.cantidad(i);
+            centavos = Math.addExact(centavos, data.subtotalCentavos(i));
+        }
+        totalUnidades = unidades;
+        totalCentavos = centavos;
+    }
+
+    // la ultima foto publicada de este modelo; se puede leer desde cualquier hilo
+    public InventarioSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    // la foto con los cambios que todavia no se publicaban (solo en el hilo de swing): sus filas son
+    // exactamente las de la tabla en este momento
+    public InventarioSnapshot snapshotAlDia() {
+        if (publicacionPendiente)
+            publicar();
+        return snapshot.get();
+    }
+
+    // ID de la fila sin crear el Producto (para el filtro de la tabla)
+    public int id(int row) {
+        return data.id(row);
+    }
+
+    private void cambio() {
+        if (!publicacionPendiente) {
+            publicacionPendiente = true;
+            SwingUtilities.invokeLater(this::publicar); // despues de los demas cambios de este evento
+        }
+    }
+
+    private void publicar() {
+        if (!publicacionPendiente && version > 0)
+            return; // ya se publico (snapshotAlDia se adelanto al invokeLater)
+        publicacionPendiente = false;
+        long inicio = System.nanoTime();
+        var s = data.congelar(++version, totalUnidades, totalCentavos);
+        snapshot.set(s);
+        if (publicaGlobal)
+            InventarioSnapshot.publicar(s);
+        long nanos = System.nanoTime() - inicio;
+        publicaciones++;
+        publicarNanosTotal += nanos;
+        publicarNanosMax = Math.max(publicarNanosMax, nanos);
+        versiones.removeIf(r -> r.get() == null);
+        versiones.add(new WeakReference<>(s));
+    }
+
+    // version: la ultima publicada. versionesRetenidas: fotos que todavia no recoge el GC (alguien las sigue
+    // usando o el GC no ha pasado) y los bytes que ocupan
+    public record MetricasSnapshot(long version, long publicaciones, double publicarMsProm, double publicarMsMax,
+            int versionesRetenidas, long bytesRetenidos) {
+        @Override
+        public String toString() {
+            return String.format("Version %d (%d publicaciones)%nPublicar: %.3f ms prom, %.3f ms max%n"
+                    + "Versiones retenidas: %d (%.2f MB)", version, publicaciones, publicarMsProm, publicarMsMax,
+                    versionesRetenidas, bytesRetenidos / (1024.0 * 1024.0));
+        }
+    }
+
+    public MetricasSnapshot metricasSnapshot() {
+        int vivas = 0;
+        long bytes = 0;
+        for (var r : versiones) {
+            var s = r.get();
+            if (s != null) {
+                vivas++;
+                bytes += s.bytesEstimados();
+            }
+        }
+        return new MetricasSnapshot(version, publicaciones,
+                publicaciones == 0 ? 0 : publicarNanosTotal / 1e6 / publicaciones, publicarNanosMax / 1e6,
+                vivas, bytes);
+    }
+
+    // ======== Guardado incremental ========
+
+    public boolean hayCambios() {
+        return reemplazoCompleto || !insertadas.isEmpty() || !actualizadas.isEmpty() || !borrados.isEmpty();
+    }
+
+    // lo que cambio desde el ultimo guardado junto con la foto de ese mismo momento (las filas de los dos
+    // coinciden). se toma en el hilo de swing y se guarda en otro (guardar no toca el modelo); al tomarlo el
+    // modelo ya no lo cuenta como pendiente
+    public record Pendientes(InventarioSnapshot foto, boolean completo, List<Producto> nuevos,
+            List<Producto> modificados, Set<Integer> borrados) {
+        // solo lo que cambio, en un batch dentro de una transaccion. despues de setAll no hay forma de saber
+        // que cambio, asi que se compara la tabla completa con la foto
+        public SyncEngine.Resultado guardar() throws SQLException {
+            if (completo)
+                return SyncEngine.sincronizar(foto.productos());
+            return SyncEngine.aplicarCambios(nuevos, modificados, borrados);
+        }
+    }
+
+    public Pendientes tomarPendientes() {
+        var p = new Pendientes(snapshotAlDia(), reemplazoCompleto, filas(insertadas), filas(actualizadas),
+                new HashSet<>(borrados));
+        limpiarPendientes();
+        return p;
+    }
+
+    // guardar fallo (se hizo rollback): lo tomado ya no esta en los pendientes y pudo volver a cambiar
+    // despues, asi que el siguiente guardado compara la tabla completa
+    public void guardadoFallido() {
+        reemplazoCompleto = true;
+    }
+
+    private List<Producto> filas(BitSet bits) {
+        List<Producto> out = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            out.add(data.get(i));
+        }
+        return out;
+    }
+
+    private void limpiarPendientes() {
+        insertadas.clear();
+        actualizadas.clear();
+        borrados.clear();
+        reemplazoCompleto = false;
+    }
+
+    // al borrar una fila las de abajo suben una posicion, asi que sus bits tambien
+    private static void recorrer(BitSet bits, int row) {
+        if (bits.length() <= row)
+            return;
+        BitSet arriba = bits.get(row + 1, Math.max(row + 1, bits.length()));
+        bits.clear(row, bits.length());
+        for (int i = arriba.nextSetBit(0); i >= 0; i = arriba.nextSetBit(i + 1)) {
+            bits.set(row + i);
+        }
+    }
+}
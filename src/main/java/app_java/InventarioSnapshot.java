@@ -0,0 +1,120 @@
+package app_java;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReference;
+
+// foto inmutable del inventario en una version. el modelo la publica despues de cada cambio (en el hilo de
+// swing) y cualquier otro hilo (el servidor REST, exportaciones, reportes) la lee sin candados: nadie la
+// modifica, y quien la tiene sigue viendo la misma version aunque la tabla cambie despues
+final class InventarioSnapshot {
+    static final InventarioSnapshot VACIO = new InventarioSnapshot(0, 0, new int[0], new String[0], new int[0],
+            new long[0], new long[0], 0, 0);
+
+    // la ultima foto del inventario cargado de la base de datos (la ventana de inventario la publica)
+    private static final AtomicReference<InventarioSnapshot> ACTUAL = new AtomicReference<>(VACIO);
+
+    static InventarioSnapshot actual() {
+        return ACTUAL.get();
+    }
+
+    static void publicar(InventarioSnapshot s) {
+        ACTUAL.set(s);
+    }
+
+    final long version;
+    final long creadoNanos = System.nanoTime();
+    private final int size;
+    private final int[] ids;
+    private final String[] nombres;
+    private final int[] cantidades;
+    private final long[] centavos;
+    private final long[] subtotales;
+    private final long unidades;
+    private final long totalCentavos;
+
+    // los arreglos ya son copias que nadie mas tiene (ver ColumnarStore.congelar)
+    InventarioSnapshot(long version, int size, int[] ids, String[] nombres, int[] cantidades, long[] centavos,
+            long[] subtotales, long unidades, long totalCentavos) {
+        this.version = version;
+        this.size = size;
+        this.ids = ids;
+        this.nombres = nombres;
+        this.cantidades = cantidades;
+        this.centavos = centavos;
+        this.subtotales = subtotales;
+        this.unidades = unidades;
+        this.totalCentavos = totalCentavos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int id(int i) {
+        return ids[i];
+    }
+
+    String nombre(int i) {
+        return nombres[i];
+    }
+
+    int cantidad(int i) {
+        return cantidades[i];
+    }
+
+    long centavos(int i) {
+        return centavos[i];
+    }
+
+    long subtotalCentavos(int i) {
+        return subtotales[i];
+    }
+
+    Producto get(int i) {
+        return new Producto(ids[i], nombres[i], cantidades[i], centavos[i]);
+    }
+
+    // posicion del ID en esta foto o -1 (recorre la foto; para pocas consultas fuera del hilo de swing)
+    int indexOfId(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id)
+                return i;
+        }
+        return -1;
+    }
+
+    Database.Totales totales() {
+        return new Database.Totales(size, unidades, totalCentavos);
+    }
+
+    BigDecimal valor() {
+        return Producto.deCentavos(totalCentavos);
+    }
+
+    // los productos de esta version como lista de solo lectura (cada Producto se crea al pedirlo)
+    List<Producto> productos() {
+        return new Lista();
+    }
+
+    private final class Lista extends AbstractList<Producto> implements RandomAccess {
+        @Override
+        public Producto get(int i) {
+            if (i < 0 || i >= size)
+                throw new IndexOutOfBoundsException(i);
+            return InventarioSnapshot.this.get(i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // bytes propios de la foto: los arreglos (los String se comparten con el modelo y no cuentan)
+    long bytesEstimados() {
+        return 6 * 16L + (long) ids.length * (4 + 4 + 4) + (long) centavos.length * (8 + 8) + 48;
+    }
+}
@@ -0,0 +1,432 @@
+package app_java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// lee el CSV del inventario (id,nombre,cantidad,precio) directo de los bytes del archivo mapeado en memoria.
+// antes cada linea pasaba por readLine (un String), parseCsvLine (ArrayList, StringBuilder y un String por
+// campo), Integer.parseInt y new BigDecimal; aqui los numeros se leen de los bytes y solo se crea el String
+// del nombre. reglas de comillas: "" dentro de comillas es una comilla, la coma y el salto de linea entre
+// comillas no separan (un nombre con salto de linea se guarda asi), y afuera de comillas el fin de linea
+// (\n, \r o \r\n) termina la fila.
+// del mapeo se copian bloques de 1 MB a un byte[] que se reutiliza: recorrer un arreglo es varias veces mas
+// rapido que leer el MappedByteBuffer byte por byte.
+// uso: while (lector.siguiente()) { lector.id(), lector.nombre(), ... }
+// un archivo grande se puede partir en tramos que empiezan en inicio de fila (partir) y leer cada uno en su hilo
+final class LectorCsv implements AutoCloseable {
+    private static final long VENTANA = 1L << 30; // se mapea por partes de 1 GB (un map no pasa de 2 GB)
+    private static final int BLOQUE = 1 << 20;
+
+    record Tramo(long desde, long hasta, int lineasAntes) {
+    }
+
+    private final FileChannel canal;
+    private final long fin; // se lee hasta aqui (el archivo completo o el fin del tramo)
+    private MappedByteBuffer ventana;
+    private long inicioVentana; // posicion en el archivo donde empieza la ventana
+
+    private byte[] datos = new byte[BLOQUE]; // bytes copiados de la ventana
+    private long inicioDatos; // posicion en el archivo de datos[0]
+    private int pos; // siguiente byte por leer en datos
+    private int lim; // bytes validos en datos
+    private int linea;
+    private int saltosEnComillas; // saltos de linea dentro de comillas en la fila actual
+
+    // campos de la linea actual
+    private final int[] inicios = new int[4];
+    private final int[] fines = new int[4];
+    private int campos;
+    private int comillas; // bit k: el campo k tiene comillas
+    private byte[] sinComillas = new byte[64]; // el campo ya sin comillas (solo si las tenia); se reutiliza
+
+    // el campo que se esta leyendo: b[d, h)
+    private byte[] b;
+    private int d;
+    private int h;
+
+    private int id;
+    private String nombre;
+    private int cantidad;
+    private long centavos;
+
+    LectorCsv(Path archivo) throws IOException {
+        this(archivo, 0, Files.size(archivo), 0);
+    }
+
+    LectorCsv(Path archivo, Tramo t) throws IOException {
+        this(archivo, t.desde(), t.hasta(), t.lineasAntes());
+    }
+
+    private LectorCsv(Path archivo, long desde, long hasta, int lineasAntes) throws IOException {
+        canal = FileChannel.open(archivo, StandardOpenOption.READ);
+        fin = Math.min(hasta, canal.size());
+        inicioDatos = desde;
+        linea = lineasAntes;
+    }
+
+    // bytes ya leidos (para la barra de avance)
+    long posicion() {
+        return inicioDatos + pos;
+    }
+
+    long fin() {
+        return fin;
+    }
+
+    int linea() {
+        return linea;
+    }
+
+    int id() {
+        return id;
+    }
+
+    String nombre() {
+        return nombre;
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    long centavos() {
+        return centavos;
+    }
+
+    // se brinca una linea sin revisarla (el encabezado)
+    boolean saltarLinea() throws IOException {
+        if (posicion() >= fin)
+            return false;
+        linea++;
+        pos = despuesDe(separar());
+        linea += saltosEnComillas;
+        return true;
+    }
+
+    // lee la siguiente fila; false al final del archivo. IllegalArgumentException si la fila no sirve
+    boolean siguiente() throws IOException {
+        if (posicion() >= fin)
+            return false;
+        linea++;
+        int siguiente = despuesDe(separar());
+        if (campos != 4) {
+            pos = siguiente;
+            var e = error("CSV inválido");
+            linea += saltosEnComillas;
+            throw e;
+        }
+        // los campos se leen antes de avanzar (datos no cambia); si uno falla la fila igual queda leida
+        try {
+            campo(0);
+            id = entero();
+            campo(1);
+            nombre = texto();
+            campo(2);
+            cantidad = entero();
+            campo(3);
+            centavos = precio();
+        } finally {
+            pos = siguiente;
+            linea += saltosEnComillas; // los errores dicen la linea donde empieza la fila
+        }
+        return true;
+    }
+
+    // ubica los campos de la linea que empieza en pos (comas fuera de comillas) en una sola pasada y
+    // regresa el indice del fin de linea. si la linea sigue despues de lo copiado se copia mas y se repite
+    private int separar() throws IOException {
+        while (true) {
+            byte[] a = datos;
+            campos = 0;
+            comillas = 0;
+            saltosEnComillas = 0;
+            boolean inQ = false;
+            int desde = pos;
+            for (int i = pos; i < lim; i++) {
+                byte c = a[i];
+                if (c == ',') {
+                    if (!inQ) {
+                        marcar(desde, i);
+                        desde = i + 1;
+                    }
+                } else if (c == '"') {
+                    inQ = !inQ; // "" dentro de comillas cierra y vuelve a abrir: el resultado es el mismo
+                    if (campos < 4)
+                        comillas |= 1 << campos;
+                } else if (inQ) {
+                    if (c == '\n')
+                        saltosEnComillas++;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r' && i + 1 == lim && inicioDatos + lim < fin)
+                        break; // puede ser un \r\n partido entre dos bloques
+                    marcar(desde, i);
+                    return i;
+                }
+            }
+            if (!rellenar()) { // ultima linea sin salto
+                marcar(desde, lim);
+                return lim;
+            }
+        }
+    }
+
+    private void marcar(int desde, int hasta) {
+        if (campos < 4) {
+            inicios[campos] = desde;
+            fines[campos] = hasta;
+        }
+        campos++;
+    }
+
+    private int despuesDe(int fin) {
+        if (fin + 1 < lim && datos[fin] == '\r' && datos[fin + 1] == '\n')
+            return fin + 2;
+        return Math.min(fin + 1, lim);
+    }
+
+    // copia mas bytes del archivo despues de lim (lo que falta de leer se recorre al inicio); false si ya no hay
+    private boolean rellenar() throws IOException {
+        long leido = inicioDatos + lim;
+        if (leido >= fin)
+            return false;
+        if (pos > 0) {
+            System.arraycopy(datos, pos, datos, 0, lim - pos);
+            inicioDatos += pos;
+            lim -= pos;
+            pos = 0;
+        } else if (lim == datos.length) {
+            datos = Arrays.copyOf(datos, datos.length * 2); // una linea mas larga que el bloque
+        }
+        if (ventana == null || leido >= inicioVentana + ventana.limit()) {
+            inicioVentana = leido;
+            ventana = canal.map(FileChannel.MapMode.READ_ONLY, leido, Math.min(VENTANA, fin - leido));
+        }
+        int n = (int) Math.min(datos.length - lim, inicioVentana + ventana.limit() - leido);
+        ventana.get((int) (leido - inicioVentana), datos, lim, n);
+        lim += n;
+        return true;
+    }
+
+    // ======== Tramos para leer en paralelo ========
+
+    // parte el archivo en tramos de mas o menos tamTramo bytes que empiezan en inicio de fila. un salto de
+    // linea dentro de comillas no es inicio de fila, y eso depende de cuantas comillas hay antes: cada pedazo
+    // cuenta sus comillas (en paralelo) y con la paridad acumulada de los anteriores sabe si empieza dentro
+    // de comillas; desde ahi busca su primer fin de fila (tambien en paralelo)
+    static List<Tramo> partir(Path archivo, long tamTramo) throws IOException {
+        long tamano = Files.size(archivo);
+        int n = (int) Math.max(1, (tamano + tamTramo - 1) / tamTramo);
+        if (n == 1)
+            return List.of(new Tramo(0, tamano, 0));
+        long[][] cuentas = IntStream.range(0, n).parallel()
+                .mapToObj(k -> sinError(() -> contar(archivo, k * tamTramo, Math.min(tamano, (k + 1) * tamTramo))))
+                .toArray(long[][]::new);
+        boolean[] enComillas = new boolean[n];
+        int[] saltos = new int[n];
+        for (int k = 1; k < n; k++) {
+            enComillas[k] = enComillas[k - 1] ^ (cuentas[k - 1][0] & 1) == 1;
+            saltos[k] = saltos[k - 1] + (int) cuentas[k - 1][1];
+        }
+        long[][] cortes = IntStream.range(0, n).parallel().mapToObj(k -> sinError(() -> {
+            if (k == 0)
+                return new long[] { 0, 0 };
+            try (var l = new LectorCsv(archivo, k * tamTramo, tamano, saltos[k])) {
+                long corte = l.inicioDeFila(enComillas[k]);
+                return new long[] { corte, l.linea };
+            }
+        })).toArray(long[][]::new);
+
+        List<Tramo> tramos = new ArrayList<>(n);
+        long desde = 0;
+        int lineas = 0;
+        for (int k = 1; k <= n; k++) {
+            long hasta = k < n ? cortes[k][0] : tamano;
+            if (hasta > desde) { // una fila mas larga que un pedazo deja pedazos sin inicio de fila propio
+                tramos.add(new Tramo(desde, hasta, lineas));
+                desde = hasta;
+                lineas = k < n ? (int) cortes[k][1] : 0;
+            }
+        }
+        return tramos;
+    }
+
+    // {comillas, saltos de linea} en [desde, hasta)
+    private static long[] contar(Path archivo, long desde, long hasta) throws IOException {
+        long comillas = 0, saltos = 0;
+        try (var l = new LectorCsv(archivo, desde, hasta, 0)) {
+            while (l.rellenar()) {
+                for (int i = l.pos; i < l.lim; i++) {
+                    byte c = l.datos[i];
+                    if (c == '"')
+                        comillas++;
+                    else if (c == '\n')
+                        saltos++;
+                }
+                l.pos = l.lim;
+            }
+        }
+        return new long[] { comillas, saltos };
+    }
+
+    // posicion del primer inicio de fila desde donde empieza el lector, sabiendo si ahi se esta dentro de
+    // comillas; cuenta en linea los saltos que pasa
+    private long inicioDeFila(boolean inQ) throws IOException {
+        while (true) {
+            int i = pos;
+            for (; i < lim; i++) {
+                byte c = datos[i];
+                if (c == '"') {
+                    inQ = !inQ;
+                } else if (c == '\n' || c == '\r') {
+                    if (!inQ && c == '\r' && i + 1 == lim && inicioDatos + lim < fin)
+                        break; // puede ser un \r\n partido entre dos bloques
+                    if (c == '\n')
+                        linea++;
+                    if (!inQ) {
+                        int siguiente = despuesDe(i);
+                        if (siguiente == i + 2)
+                            linea++; // el \n de \r\n
+                        return inicioDatos + siguiente;
+                    }
+                }
+            }
+            pos = i;
+            if (!rellenar())
+                return fin;
+        }
+    }
+
+    private interface ConError<T> {
+        T get() throws IOException;
+    }
+
+    private static <T> T sinError(ConError<T> f) {
+        try {
+            return f.get();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // deja el campo k en b[d, h); sin comillas se lee donde esta, con comillas se copia sin ellas
+    private void campo(int k) {
+        if ((comillas & (1 << k)) == 0) {
+            b = datos;
+            d = inicios[k];
+            h = fines[k];
+            return;
+        }
+        int largo = 0;
+        boolean inQ = false;
+        for (int i = inicios[k], fin = fines[k]; i < fin; i++) {
+            byte c = datos[i];
+            if (inQ && c == '"' && i + 1 < fin && datos[i + 1] == '"') {
+                i++; // "" dentro de comillas: una comilla
+            } else if (c == '"') {
+                inQ = !inQ;
+                continue;
+            }
+            if (largo == sinComillas.length)
+                sinComillas = Arrays.copyOf(sinComillas, largo * 2);
+            sinComillas[largo++] = c;
+        }
+        b = sinComillas;
+        d = 0;
+        h = largo;
+    }
+
+    // como Integer.parseInt pero sobre los bytes del campo
+    private int entero() {
+        int i = d;
+        boolean negativo = false;
+        if (i < h && (b[i] == '-' || b[i] == '+')) {
+            negativo = b[i] == '-';
+            i++;
+        }
+        if (i == h)
+            throw numeroInvalido();
+        long v = 0;
+        for (; i < h; i++) {
+            int digito = b[i] - '0';
+            if (digito < 0 || digito > 9)
+                throw numeroInvalido();
+            v = v * 10 + digito;
+            if (v > Integer.MAX_VALUE + 1L)
+                throw numeroInvalido();
+        }
+        v = negativo ? -v : v;
+        if (v > Integer.MAX_VALUE)
+            throw numeroInvalido();
+        return (int) v;
+    }
+
+    // precio en pesos a centavos redondeando a 2 decimales como new BigDecimal(texto).setScale(2, HALF_UP).
+    // lo comun (123, 45.5, 9.99) se lee de los bytes; lo raro (exponentes, muchos digitos) pasa por BigDecimal
+    private long precio() {
+        int i = d;
+        boolean negativo = false;
+        if (i < h && (b[i] == '-' || b[i] == '+')) {
+            negativo = b[i] == '-';
+            i++;
+        }
+        long entero = 0;
+        int digitos = 0;
+        for (; i < h && b[i] >= '0' && b[i] <= '9'; i++, digitos++) {
+            entero = entero * 10 + (b[i] - '0');
+        }
+        long fraccion = 0; // los primeros dos decimales
+        boolean redondear = false;
+        int decimales = 0;
+        if (i < h && b[i] == '.') {
+            for (i++; i < h && b[i] >= '0' && b[i] <= '9'; i++, decimales++) {
+                if (decimales < 2)
+                    fraccion = fraccion * 10 + (b[i] - '0');
+                else if (decimales == 2)
+                    redondear = b[i] >= '5'; // HALF_UP: solo importa el primer digito que se quita
+            }
+        }
+        if (i != h || digitos + decimales == 0 || digitos > 15)
+            return precioLento();
+        if (decimales == 1)
+            fraccion *= 10;
+        long c = entero * 100 + fraccion + (redondear ? 1 : 0);
+        return negativo ? -c : c;
+    }
+
+    private long precioLento() {
+        String texto = texto();
+        try {
+            return Producto.aCentavos(new BigDecimal(texto));
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw error("precio inválido: " + texto);
+        }
+    }
+
+    private String texto() {
+        return new String(b, d, h - d, StandardCharsets.UTF_8);
+    }
+
+    private IllegalArgumentException numeroInvalido() {
+        return error("número inválido: " + texto());
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException("Linea " + linea + ": " + msg);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close(); // el mapeo se libera cuando el GC recoge el buffer
+    }
+}
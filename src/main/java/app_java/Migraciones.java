@@ -0,0 +1,226 @@
+package app_java;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// migraciones del esquema. la version de la base se guarda en PRAGMA user_version y al iniciar se aplican,
+// en orden, las que falten; cada una en su propia transaccion junto con el cambio de version, asi una
+// migracion queda completa o no queda. para agregar un cambio al esquema se agrega una Migracion al final
+// de la lista con el siguiente numero (nunca se cambia una que ya se publico)
+final class Migraciones {
+
+    @FunctionalInterface
+    interface Paso {
+        void aplicar(Connection conn) throws SQLException;
+    }
+
+    // enLinea: la migracion solo agrega algo opcional (por ejemplo un indice para que algo sea mas rapido).
+    // en bases grandes esas se construyen en segundo plano despues de abrir la app en vez de hacer esperar
+    record Migracion(int version, String descripcion, boolean enLinea, Paso paso) {
+    }
+
+    static final int TEXTO_COMPLETO = 4; // desde esta version existe PRODUCTOS_FTS
+
+    private static final List<Migracion> LISTA = List.of(
+            new Migracion(1, "tabla PRODUCTOS", false, Migraciones::crearTabla),
+            new Migracion(2, "PRECIO REAL a PRECIO_CENTAVOS", false, Migraciones::precioACentavos),
+            new Migracion(3, "indice unico de nombre normalizado", false, Migraciones::indiceNombre),
+            new Migracion(TEXTO_COMPLETO, "indice de texto completo FTS5 de nombres", true, Migraciones::textoCompleto),
+            new Migracion(5, "indices para ordenar por cantidad, precio y subtotal", true, Migraciones::indicesOrden));
+
+    // ultima version aplicada en esta base; las migraciones en segundo plano la suben al terminar cada una
+    private static volatile int versionAplicada;
+
+    private Migraciones() {
+    }
+
+    // true si la base ya tiene la migracion (las consultas que dependen de una migracion en linea lo revisan
+    // y usan otra forma mientras no este)
+    static boolean aplicada(int version) {
+        return versionAplicada >= version;
+    }
+
+    // version del esquema que espera esta version de la app
+    static int versionApp() {
+        return LISTA.get(LISTA.size() - 1).version();
+    }
+
+    // aplica las migraciones pendientes. si la base es de una version mas nueva de la app no se toca y se
+    // lanza IllegalStateException para que la app no arranque con un esquema que no conoce
+    static void aplicar(Connection conn) throws SQLException {
+        int actual = leerVersion(conn);
+        versionAplicada = actual;
+        if (actual > versionApp()) {
+            throw new IllegalStateException("La base de datos tiene la version de esquema " + actual
+                    + " y esta aplicacion solo conoce hasta la " + versionApp() + ". Actualiza la aplicacion.");
+        }
+        long umbral = Configuracion.largo("inventario.db.migracion.filas-en-linea", 100_000);
+        long filas = -1;
+        for (int i = 0; i < LISTA.size(); i++) {
+            Migracion m = LISTA.get(i);
+            if (m.version() <= actual)
+                continue;
+            if (m.enLinea()) {
+                if (filas < 0)
+                    filas = filasAproximadas(conn);
+                if (filas > umbral) {
+                    enSegundoPlano(LISTA.subList(i, LISTA.size()));
+                    return;
+                }
+            }
+            ejecutar(conn, m);
+        }
+    }
+
+    private static void ejecutar(Connection conn, Migracion m) throws SQLException {
+        long inicio = System.nanoTime();
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            m.paso().aplicar(conn);
+            st.execute("PRAGMA user_version = " + m.version()); // user_version tambien es parte de la transaccion
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw new SQLException("Fallo la migracion " + m.version() + " (" + m.descripcion() + "): "
+                    + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        versionAplicada = m.version();
+        System.out.println("Migracion " + m.version() + " (" + m.descripcion() + ") aplicada en "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+
+    // las migraciones que quedan se aplican en otro hilo, en orden, cada una con la conexion de escritura.
+    // sqlite bloquea las escrituras mientras se construye un indice, pero las lecturas (WAL) siguen. mientras
+    // tanto el pool deja esperar a los escritores sin su limite de tiempo, asi la cola de escritura solo
+    // espera en vez de fallar; la interfaz no se queda congelada al abrir
+    private static void enSegundoPlano(List<Migracion> pendientes) {
+        System.out.println("Base grande: " + pendientes.size() + " migraciones se aplicaran en segundo plano");
+        Thread t = new Thread(() -> {
+            ConnectionPool.get().escrituraLarga(true);
+            try {
+                for (Migracion m : pendientes) {
+                    try (var lease = ConnectionPool.get().escritura()) {
+                        int version = leerVersion(lease.conn());
+                        if (version >= m.version()) {
+                            versionAplicada = version;
+                            continue; // otra instancia ya la aplico
+                        }
+                        ejecutar(lease.conn(), m);
+                    } catch (SQLException e) {
+                        System.out.println(e.getMessage() + " (se reintentara al reiniciar)");
+                        return; // las siguientes dependen de esta
+                    }
+                }
+            } finally {
+                ConnectionPool.get().escrituraLarga(false);
+            }
+        }, "migraciones-en-linea");
+        t.setDaemon(true); // si se cierra la app a la mitad la transaccion se deshace sola
+        t.start();
+    }
+
+    private static int leerVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // MAX(ID) sale del indice de la llave primaria sin recorrer la tabla; alcanza para decidir
+    private static long filasAproximadas(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(ID), 0) FROM PRODUCTOS")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // ======== Migraciones ========
+
+    // 1: la tabla original (las bases viejas ya la tienen, por eso IF NOT EXISTS)
+    private static void crearTabla(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS PRODUCTOS (" +
+                    "ID INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "NOMBRE VARCHAR (200)," +
+                    "CANTIDAD INTEGER," +
+                    "PRECIO_CENTAVOS INTEGER NOT NULL DEFAULT 0" + //precio en centavos enteros (dinero exacto)
+                    ")");
+        }
+    }
+
+    // 2: las bases creadas antes guardaban PRECIO como REAL (double). sqlite no cambia el tipo de una
+    // columna, asi que se reconstruye la tabla con PRECIO_CENTAVOS y se copian los datos redondeando
+    private static void precioACentavos(Connection conn) throws SQLException {
+        boolean tienePrecioReal = false;
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("PRAGMA table_info(PRODUCTOS)")) {
+            while (rs.next()) {
+                if ("PRECIO".equalsIgnoreCase(rs.getString("name")))
+                    tienePrecioReal = true;
+            }
+        }
+        if (!tienePrecioReal)
+            return; // base nueva: la tabla ya se creo con centavos
+
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE PRODUCTOS_CENTAVOS (" +
+                    "ID INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "NOMBRE VARCHAR (200)," +
+                    "CANTIDAD INTEGER," +
+                    "PRECIO_CENTAVOS INTEGER NOT NULL DEFAULT 0" +
+                    ")");
+            int filas = st.executeUpdate("INSERT INTO PRODUCTOS_CENTAVOS(ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS) "
+                    + "SELECT ID, NOMBRE, CANTIDAD, CAST(ROUND(COALESCE(PRECIO, 0) * 100) AS INTEGER) FROM PRODUCTOS");
+            st.execute("DROP TABLE PRODUCTOS"); //tambien borra sus indices
+            st.execute("ALTER TABLE PRODUCTOS_CENTAVOS RENAME TO PRODUCTOS");
+            System.out.println("Precios migrados a centavos: " + filas + " productos");
+        }
+    }
+
+    // 3: indice unico sobre el nombre normalizado. si la base ya tenia nombres repetidos (antes no habia
+    // nada que lo impidiera) se les agrega " #ID" a los repetidos para que el indice se pueda crear
+    private static void indiceNombre(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            int renombrados = st.executeUpdate("UPDATE PRODUCTOS SET NOMBRE = NOMBRE || ' #' || ID "
+                    + "WHERE ID NOT IN (SELECT MIN(ID) FROM PRODUCTOS GROUP BY " + Database.NOMBRE_NORMALIZADO + ")");
+            if (renombrados > 0)
+                System.out.println("Se renombraron " + renombrados + " productos con nombre repetido");
+            st.execute("CREATE UNIQUE INDEX IF NOT EXISTS UX_PRODUCTOS_NOMBRE ON PRODUCTOS("
+                    + Database.NOMBRE_NORMALIZADO + ")");
+        }
+    }
+
+    // 4: indice de texto completo (FTS5) sobre los nombres para buscar por palabras o prefijos sin leer la
+    // tabla completa. es de contenido externo: no guarda otra copia de los nombres, solo el indice, y los
+    // triggers lo mantienen igual a PRODUCTOS en cada insert, update y delete.
+    // remove_diacritics hace que "cafe" encuentre "Café"; prefix='2 3' acelera los prefijos cortos
+    private static void textoCompleto(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE VIRTUAL TABLE IF NOT EXISTS PRODUCTOS_FTS USING fts5(NOMBRE, "
+                    + "content='PRODUCTOS', content_rowid='ID', "
+                    + "tokenize='unicode61 remove_diacritics 2', prefix='2 3')");
+            st.execute("CREATE TRIGGER IF NOT EXISTS PRODUCTOS_FTS_AI AFTER INSERT ON PRODUCTOS BEGIN "
+                    + "INSERT INTO PRODUCTOS_FTS(rowid, NOMBRE) VALUES (new.ID, new.NOMBRE); END");
+            st.execute("CREATE TRIGGER IF NOT EXISTS PRODUCTOS_FTS_AD AFTER DELETE ON PRODUCTOS BEGIN "
+                    + "INSERT INTO PRODUCTOS_FTS(PRODUCTOS_FTS, rowid, NOMBRE) VALUES ('delete', old.ID, old.NOMBRE); END");
+            st.execute("CREATE TRIGGER IF NOT EXISTS PRODUCTOS_FTS_AU AFTER UPDATE OF NOMBRE ON PRODUCTOS BEGIN "
+                    + "INSERT INTO PRODUCTOS_FTS(PRODUCTOS_FTS, rowid, NOMBRE) VALUES ('delete', old.ID, old.NOMBRE); "
+                    + "INSERT INTO PRODUCTOS_FTS(rowid, NOMBRE) VALUES (new.ID, new.NOMBRE); END");
+            st.execute("INSERT INTO PRODUCTOS_FTS(PRODUCTOS_FTS) VALUES ('rebuild')"); // indexa lo que ya existe
+        }
+    }
+
+    // 5: la tabla virtual del catalogo ordena en sqlite; sin indice, cada pagina ordenada por cantidad o
+    // precio tendria que ordenar la tabla completa. el ID al final hace unico el orden (paginacion por llave)
+    private static void indicesOrden(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE INDEX IF NOT EXISTS IX_PRODUCTOS_CANTIDAD ON PRODUCTOS(CANTIDAD, ID)");
+            st.execute("CREATE INDEX IF NOT EXISTS IX_PRODUCTOS_PRECIO ON PRODUCTOS(PRECIO_CENTAVOS, ID)");
+            st.execute("CREATE INDEX IF NOT EXISTS IX_PRODUCTOS_SUBTOTAL ON PRODUCTOS(CANTIDAD * PRECIO_CENTAVOS, ID)");
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package app_java;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+// modelo de tabla virtual para catalogos grandes: no carga la tabla completa como InventarioModel. sabe
+// cuantas filas hay (COUNT) y pide a sqlite solo las paginas que la tabla va pintando, en otro hilo.
+// en memoria quedan las ultimas paginas usadas (LRU) y el orden y el filtro los resuelve sqlite.
+// es de solo lectura; todo su estado se toca en el hilo de swing, el hilo lector solo consulta la base
+class PagedInventarioModel extends AbstractTableModel {
+    private static final int TAM_PAGINA = Configuracion.entero("inventario.catalogo.pagina", 500);
+    private static final int MAX_PAGINAS = Configuracion.entero("inventario.catalogo.paginas-en-memoria", 40);
+
+    private final String[] cols = { "ID", "Nombre", "Cantidad", "Precio", "Subtotal" };
+    private final Class<?>[] types = { Integer.class, String.class, Integer.class, BigDecimal.class,
+            BigDecimal.class };
+
+    // una pagina ya leida; los BigDecimal se crean al leerla para que pintar no cree objetos
+    private static final class Pagina {
+        final Producto[] filas;
+        final BigDecimal[] precios;
+        final BigDecimal[] subtotales;
+
+        Pagina(List<Producto> lista) {
+            filas = lista.toArray(new Producto[0]);
+            precios = new BigDecimal[filas.length];
+            subtotales = new BigDecimal[filas.length];
+            for (int i = 0; i < filas.length; i++) {
+                precios[i] = filas[i].precio();
+                subtotales[i] = Producto.deCentavos(filas[i].subtotalCentavos());
+            }
+        }
+    }
+
+    private final LinkedHashMap<Integer, Pagina> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Pagina> e) {
+            return size() > MAX_PAGINAS;
+        }
+    };
+    // clave de la ultima fila de cada pagina leida: con ella la siguiente se pide por llave y no con OFFSET.
+    // no se borra al sacar la pagina del cache (son unos bytes por pagina). la escribe el hilo lector (asi la
+    // pagina adelantada ya encuentra la clave de la anterior) y hay un mapa nuevo por cada orden y filtro
+    private Map<Integer, Database.Clave> finDePagina = new ConcurrentHashMap<>();
+    private final Set<Integer> pendientes = new HashSet<>();
+    private final ExecutorService lector = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "paginas-sqlite");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int filas;
+    private int columnaOrden;
+    private boolean descendente;
+    private Database.Condicion filtro = Database.Condicion.NINGUNA;
+    private int generacion; // sube al cambiar orden o filtro; lo que llegue de antes se descarta
+    private volatile int paginaVisible; // las paginas que quedaron lejos de lo visible ya no se leen
+    private final Consumer<String> estado; // mensajes para la barra de estado de la ventana
+
+    PagedInventarioModel(Consumer<String> estado) {
+        this.estado = estado;
+        contar();
+    }
+
+    @Override
+    public int getRowCount() {
+        return filas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return cols.length;
+    }
+
+    @Override
+    public String getColumnName(int c) {
+        return cols[c];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int c) {
+        return types[c];
+    }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        int num = row / TAM_PAGINA;
+        paginaVisible = num;
+        Pagina pg = cache.get(num);
+        if (pg == null) {
+            pedir(num);
+            pedir(num + 1); // la siguiente se adelanta mientras se ve esta
+            return null; // la celda queda vacia hasta que llegue la pagina
+        }
+        int i = row - num * TAM_PAGINA;
+        if (i >= pg.filas.length)
+            return null;
+        if (i > TAM_PAGINA * 3 / 4)
+            pedir(num + 1); // cerca del final de la pagina: se adelanta la siguiente
+        Producto p = pg.filas[i];
+        return switch (col) {
+            case 0 -> p.id;
+            case 1 -> p.nombre;
+            case 2 -> p.cantidad;
+            case 3 -> pg.precios[i];
+            case 4 -> pg.subtotales[i];
+            default -> "";
+        };
+    }
+
+    // el producto de la fila si su pagina ya esta en memoria, si no null
+    Producto get(int row) {
+        Pagina pg = cache.get(row / TAM_PAGINA);
+        int i = row % TAM_PAGINA;
+        return pg == null || i >= pg.filas.length ? null : pg.filas[i];
+    }
+
+    int columnaOrden() {
+        return columnaOrden;
+    }
+
+    boolean descendente() {
+        return descendente;
+    }
+
+    // ordena por la columna; si ya estaba ordenado por ella cambia de ascendente a descendente
+    void ordenarPor(int columna) {
+        descendente = columna == columnaOrden && !descendente;
+        columnaOrden = columna;
+        reiniciar();
+        fireTableDataChanged();
+    }
+
+    void filtrar(Database.Condicion nuevo) {
+        filtro = nuevo;
+        reiniciar();
+        contar();
+    }
+
+    // para cuando la base cambio desde otra ventana (UiCatalogo lo llama con Database.alCambiar)
+    void recargar() {
+        reiniciar();
+        contar();
+    }
+
+    void cerrar() {
+        lector.shutdownNow();
+    }
+
+    // ======== Lectura en segundo plano ========
+
+    private void reiniciar() {
+        generacion++;
+        cache.clear();
+        finDePagina = new ConcurrentHashMap<>();
+        pendientes.clear();
+    }
+
+    private void contar() {
+        int gen = generacion;
+        Database.Condicion f = filtro;
+        estado.accept("Contando productos…");
+        lector.execute(() -> {
+            try {
+                int n = Database.countProducts(f);
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generacion)
+                        return;
+                    filas = n;
+                    fireTableDataChanged();
+                    estado.accept(n + " productos");
+                });
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> estado.accept("Error al contar: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void pedir(int num) {
+        if ((long) num * TAM_PAGINA >= filas || cache.containsKey(num) || !pendientes.add(num))
+            return;
+        int gen = generacion;
+        int columna = columnaOrden;
+        boolean desc = descendente;
+        Database.Condicion f = filtro;
+        Map<Integer, Database.Clave> claves = finDePagina;
+        long offset = (long) num * TAM_PAGINA;
+        lector.execute(() -> {
+            if (Math.abs(num - paginaVisible) > MAX_PAGINAS / 2) { // se hizo scroll lejos mientras esperaba
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == generacion)
+                        pendientes.remove(num);
+                });
+                return;
+            }
+            try {
+                Database.Clave anterior = num == 0 ? null : claves.get(num - 1); // se busca ya en este hilo
+                var pagina = Database.productPage(columna, desc, f, anterior, offset, TAM_PAGINA);
+                if (pagina.ultima() != null)
+                    claves.put(num, pagina.ultima());
+                Pagina pg = new Pagina(pagina.filas());
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generacion)
+                        return;
+                    pendientes.remove(num);
+                    cache.put(num, pg);
+                    int desde = num * TAM_PAGINA;
+                    int hasta = Math.min(desde + TAM_PAGINA, filas) - 1;
+                    if (hasta >= desde)
+                        fireTableRowsUpdated(desde, hasta);
+                });
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == generacion)
+                        pendientes.remove(num);
+                    estado.accept("Error al leer productos: " + e.getMessage());
+                });
+            }
+        });
+    }
+}
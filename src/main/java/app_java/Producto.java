@@ -0,0 +1,50 @@
+package app_java;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+// ======== Modelo de dominio ========
+// antes estaba repetido dentro de UiGeneral y UiInventario; ahora lo usan las dos vistas y Database
+class Producto { // producto es un objeto
+    final int id;// id para identificacion una del producto
+    String nombre;
+    int cantidad;
+    long centavos; // precio en centavos enteros: sin errores de redondeo y sin BigDecimal por fila
+
+    Producto(int id, String nombre, int cantidad, long centavos) { // se crea un contructor para el objeto
+                                                                   // producto asi podemos instanciarlo
+        this.id = id;
+        this.nombre = nombre;
+        this.cantidad = cantidad;
+        this.centavos = centavos;
+    }
+
+    Producto(int id, String nombre, int cantidad, BigDecimal precio) { // para lo que viene del dialogo o del CSV
+        this(id, nombre, cantidad, aCentavos(precio));
+    }
+
+    BigDecimal precio() { // el precio como BigDecimal solo cuando se va a mostrar
+        return deCentavos(centavos);
+    }
+
+    long subtotalCentavos() {
+        return Math.multiplyExact(centavos, (long) cantidad);
+    }
+
+    // mismos datos (las filas del modelo se crean al pedirlas, asi que no se comparan por referencia)
+    boolean mismosDatos(Producto o) {
+        return o != null && id == o.id && cantidad == o.cantidad && centavos == o.centavos
+                && Objects.equals(nombre, o.nombre);
+    }
+
+    // ======== Conversion de dinero ========
+
+    static long aCentavos(BigDecimal precio) {
+        return precio.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal deCentavos(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+}
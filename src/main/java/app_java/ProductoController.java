@@ -0,0 +1,47 @@
+package app_java;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// API REST del inventario (el servidor lo arranca App junto con la ventana)
+@RestController
+@RequestMapping("/api/productos")
+public class ProductoController {
+
+    private static final int LIMITE_MAXIMO = 500;
+
+    // lo que se manda como JSON; el precio sale en pesos con dos decimales
+    public record ProductoJson(int id, String nombre, int cantidad, BigDecimal precio) {
+        static ProductoJson de(Producto p) {
+            return new ProductoJson(p.id, p.nombre, p.cantidad, p.precio());
+        }
+    }
+
+    public record Resumen(long version, long productos, long unidades, BigDecimal valor, long edadMs) {
+    }
+
+    // GET /api/productos/resumen -> totales de la ultima foto publicada por la ventana de inventario.
+    // se lee sin candados y sin tocar la tabla de swing; edadMs dice hace cuanto se publico esa version
+    @GetMapping("/resumen")
+    public Resumen resumen() {
+        var s = InventarioSnapshot.actual();
+        var t = s.totales();
+        return new Resumen(s.version, t.productos(), t.unidades(), s.valor(),
+                (System.nanoTime() - s.creadoNanos) / 1_000_000);
+    }
+
+    // GET /api/productos/buscar?q=torn&limite=20 -> productos cuyo nombre coincide, los mas relevantes primero.
+    // busca en toda la base con el indice de texto completo, no en lo que tenga cargado la ventana
+    @GetMapping("/buscar")
+    public List<ProductoJson> buscar(@RequestParam("q") String q,
+            @RequestParam(value = "limite", defaultValue = "50") int limite) throws SQLException {
+        int n = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+        return Database.searchProducts(q, n).stream().map(ProductoJson::de).toList();
+    }
+}
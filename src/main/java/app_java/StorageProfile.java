@@ -0,0 +1,67 @@
+package app_java;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// perfiles de almacenamiento de sqlite. cada uno es un juego de pragmas que el pool aplica a todas sus
+// conexiones: se elige en application.properties (inventario.db.perfil) y la importacion de CSV cambia a
+// BULK_LOAD mientras dura y luego regresa al configurado.
+// todos usan WAL (los lectores no se bloquean detras del escritor); cambiar journal_mode con conexiones
+// abiertas no siempre es posible, asi que lo que cambia entre perfiles es sobre todo synchronous y memoria
+enum StorageProfile {
+    // cada commit llega al disco antes de regresar; lo mas seguro ante un corte de luz
+    DURABLE("WAL", "FULL", 0, -2_000, "DEFAULT"),
+    // en WAL con NORMAL un corte de luz puede perder el ultimo commit pero nunca corrompe la base
+    BALANCED("WAL", "NORMAL", 256L * 1024 * 1024, -16_000, "MEMORY"),
+    // para cargas masivas: sin esperar al disco y con mas cache; solo mientras dura la importacion
+    BULK_LOAD("WAL", "OFF", 256L * 1024 * 1024, -64_000, "MEMORY");
+
+    final String journalMode;
+    final String synchronous;
+    final long mmapSize; // bytes del archivo que se leen con memoria mapeada (0 = desactivado)
+    final int cacheSize; // negativo = KiB de cache de paginas por conexion
+    final String tempStore;
+
+    StorageProfile(String journalMode, String synchronous, long mmapSize, int cacheSize, String tempStore) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.tempStore = tempStore;
+    }
+
+    // perfil configurado; acepta durable, balanced o bulk-load
+    static StorageProfile configurado() {
+        String valor = Configuracion.texto("inventario.db.perfil", "balanced");
+        try {
+            return valueOf(valor.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Perfil de almacenamiento desconocido '" + valor + "', se usa BALANCED");
+            return BALANCED;
+        }
+    }
+
+    // aplica los pragmas a una conexion. journal_mode solo se cambia si es distinto, porque requiere que
+    // nadie mas tenga el archivo abierto; si no se puede se avisa y se siguen aplicando los demas
+    void aplicar(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            try (var rs = st.executeQuery("PRAGMA journal_mode")) {
+                String actual = rs.next() ? rs.getString(1) : "";
+                if (!journalMode.equalsIgnoreCase(actual)) {
+                    try (var cambio = st.executeQuery("PRAGMA journal_mode = " + journalMode)) {
+                        if (cambio.next() && !journalMode.equalsIgnoreCase(cambio.getString(1)))
+                            System.out.println("No se pudo cambiar journal_mode a " + journalMode
+                                    + " (sigue en " + cambio.getString(1) + ")");
+                    } catch (SQLException e) {
+                        System.out.println("No se pudo cambiar journal_mode a " + journalMode + ": " + e.getMessage());
+                    }
+                }
+            }
+            st.execute("PRAGMA synchronous = " + synchronous);
+            st.execute("PRAGMA mmap_size = " + mmapSize);
+            st.execute("PRAGMA cache_size = " + cacheSize);
+            st.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package app_java;
+
+import java.util.Arrays;
+
+// nombres sin repetir: cada texto distinto se guarda una sola vez y las filas guardan solo su numero (int).
+// la tabla hash es de direccionamiento abierto sobre un int[] para no crear un objeto por entrada como HashMap.
+// los nombres no se quitan uno por uno (una fila borrada deja su nombre); clear() vacia todo y setAll lo usa
+final class StringPool {
+    private String[] valores = new String[16];
+    private int[] tabla = new int[32]; // indice + 1 en valores; 0 = vacio
+    private int n;
+
+    // numero del texto; si no estaba se agrega
+    int intern(String s) {
+        if (s == null)
+            s = "";
+        int mask = tabla.length - 1;
+        for (int i = mezclar(s.hashCode()) & mask;; i = (i + 1) & mask) {
+            int k = tabla[i];
+            if (k == 0)
+                break;
+            if (valores[k - 1].equals(s))
+                return k - 1;
+        }
+        if (n == valores.length)
+            valores = Arrays.copyOf(valores, n + (n >> 1));
+        valores[n] = s;
+        n++;
+        if (n * 2 > tabla.length) {
+            rehacer(tabla.length * 2);
+        } else {
+            colocar(tabla, n - 1);
+        }
+        return n - 1;
+    }
+
+    // numero del texto si ya esta en el pool, -1 si no; no lo agrega
+    int buscar(String s) {
+        int mask = tabla.length - 1;
+        for (int i = mezclar(s.hashCode()) & mask;; i = (i + 1) & mask) {
+            int k = tabla[i];
+            if (k == 0)
+                return -1;
+            if (valores[k - 1].equals(s))
+                return k - 1;
+        }
+    }
+
+    String get(int i) {
+        return valores[i];
+    }
+
+    int size() {
+        return n;
+    }
+
+    void clear() {
+        valores = new String[16];
+        tabla = new int[32];
+        n = 0;
+    }
+
+    // bytes aproximados que ocupa el pool (JVM de 64 bits con referencias comprimidas)
+    long bytesEstimados() {
+        long b = 16L + 4L * valores.length + 16L + 4L * tabla.length;
+        for (int i = 0; i < n; i++) {
+            b += ColumnarStore.bytesString(valores[i]);
+        }
+        return b;
+    }
+
+    private void rehacer(int capacidad) {
+        int[] nueva = new int[capacidad];
+        for (int i = 0; i < n; i++) {
+            colocar(nueva, i);
+        }
+        tabla = nueva;
+    }
+
+    private void colocar(int[] t, int idx) {
+        int mask = t.length - 1;
+        int i = mezclar(valores[idx].hashCode()) & mask;
+        while (t[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        t[i] = idx + 1;
+    }
+
+    // los hashCode de String parecidos caen juntos; se mezclan los bits altos para repartirlos
+    private static int mezclar(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,340 @@
+package app_java;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// sincroniza el modelo en memoria con la tabla PRODUCTOS aplicando solo las diferencias.
+// antes se borraba la tabla completa y se insertaba fila por fila (una conexion y un commit por fila),
+// si algo fallaba a la mitad la tabla quedaba vacia. aqui todo va en una sola transaccion con batches:
+// o se aplica completo o no se aplica nada.
+// el nombre normalizado es unico en la tabla (UX_PRODUCTOS_NOMBRE) y sqlite lo revisa fila por fila, no al
+// final: intercambiar los nombres de dos productos choca aunque el resultado sea valido. por eso los nombres
+// que cambian pasan primero por un nombre temporal, y las filas cuyo nombre ya es de otro producto no se
+// escriben: se cuentan en nombresRepetidos y se avisan en la consola con su ID
+final class SyncEngine {
+    // prefijo de los nombres temporales ("\u0001" + ID): un nombre real no empieza con un caracter de control
+    private static final String TEMPORAL = "\u0001";
+
+    // conteos y tiempos de una sincronizacion
+    record Resultado(int insertados, int actualizados, int eliminados, int sinCambios, int duplicados,
+            int nombresRepetidos, long msComparar, long msEscribir) {
+        @Override
+        public String toString() {
+            return "insertados=" + insertados + ", actualizados=" + actualizados + ", eliminados=" + eliminados
+                    + ", sin cambios=" + sinCambios + ", ids duplicados ignorados=" + duplicados
+                    + ", nombres repetidos sin guardar=" + nombresRepetidos
+                    + " (comparar " + msComparar + " ms, escribir " + msEscribir + " ms)";
+        }
+    }
+
+    private SyncEngine() {
+    }
+
+    static Resultado sincronizar(List<Producto> modelo) throws SQLException {
+        long inicio = System.nanoTime();
+
+        // copia del modelo ordenada por ID para recorrerla junto con la tabla (que tambien se lee por ID)
+        Producto[] ordenados = modelo.toArray(Producto[]::new);
+        Arrays.sort(ordenados, Comparator.comparingInt(p -> p.id));
+
+        int insertados = 0, actualizados = 0, eliminados = 0, sinCambios = 0, duplicados = 0, repetidos = 0;
+        int renombrados = 0;
+        long msComparar, msEscribir;
+
+        try (var lease = ConnectionPool.get().escritura()) { //toda la sincronizacion usa la conexion de escritura
+            Connection conn = lease.conn();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ins = conn.prepareStatement(
+                    "INSERT INTO PRODUCTOS(ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS) VALUES (?,?,?,?)");
+                    PreparedStatement upd = conn.prepareStatement(
+                            "UPDATE PRODUCTOS SET NOMBRE = ?, CANTIDAD = ?, PRECIO_CENTAVOS = ? WHERE ID = ?");
+                    PreparedStatement tmp = conn.prepareStatement("UPDATE PRODUCTOS SET NOMBRE = ? WHERE ID = ?");
+                    PreparedStatement del = conn.prepareStatement("DELETE FROM PRODUCTOS WHERE ID = ?")) {
+
+                // 0) nombres normalizados repetidos en el modelo: solo uno cabe en la tabla
+                boolean[] repetido = nombresRepetidos(conn, ordenados);
+
+                // 1) recorrer modelo y tabla al mismo tiempo (ambos ordenados por ID) y juntar los cambios
+                try (Statement st = conn.createStatement();
+                        ResultSet rs = st.executeQuery("SELECT ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS FROM PRODUCTOS ORDER BY ID")) {
+                    int i = 0;
+                    boolean hayFila = rs.next();
+                    while (i < ordenados.length || hayFila) {
+                        if (i > 0 && i < ordenados.length && ordenados[i].id == ordenados[i - 1].id) {
+                            duplicados++; // el mismo ID dos veces en el modelo: gana la primera aparicion
+                            i++;
+                            continue;
+                        }
+                        int idDb = hayFila ? rs.getInt(1) : Integer.MAX_VALUE;
+                        Producto p = i < ordenados.length ? ordenados[i] : null;
+
+                        if (p != null && (!hayFila || p.id < idDb)) { // solo existe en el modelo
+                            if (repetido[i]) {
+                                repetidos++;
+                            } else {
+                                ins.setInt(1, p.id);
+                                ins.setString(2, p.nombre);
+                                ins.setInt(3, p.cantidad);
+                                ins.setLong(4, p.centavos);
+                                ins.addBatch();
+                                insertados++;
+                            }
+                            i++;
+                        } else if (p == null || idDb < p.id) { // solo existe en la tabla
+                            del.setInt(1, idDb);
+                            del.addBatch();
+                            eliminados++;
+                            hayFila = rs.next();
+                        } else { // existe en los dos: solo se actualiza si algo cambio
+                            String nombreDb = rs.getString(2);
+                            if (repetido[i]) {
+                                repetidos++; // la fila de la tabla se queda como esta
+                            } else if (Objects.equals(p.nombre, nombreDb) && p.cantidad == rs.getInt(3)
+                                    && p.centavos == rs.getLong(4)) {
+                                sinCambios++;
+                            } else {
+                                if (!Database.normalizarNombre(p.nombre).equals(Database.normalizarNombre(nombreDb))) {
+                                    tmp.setString(1, TEMPORAL + p.id); // suelta su nombre antes de los cambios
+                                    tmp.setInt(2, p.id);
+                                    tmp.addBatch();
+                                    renombrados++;
+                                }
+                                upd.setString(1, p.nombre);
+                                upd.setInt(2, p.cantidad);
+                                upd.setLong(3, p.centavos);
+                                upd.setInt(4, p.id);
+                                upd.addBatch();
+                                actualizados++;
+                            }
+                            i++;
+                            hayFila = rs.next();
+                        }
+                    }
+                }
+                long finComparar = System.nanoTime();
+                msComparar = (finComparar - inicio) / 1_000_000;
+
+                // 2) aplicar los cambios con el cursor ya cerrado: primero borrados, luego los nombres que
+                // cambian pasan por uno temporal, despues los cambios y al final altas
+                if (eliminados > 0)
+                    del.executeBatch();
+                if (renombrados > 0)
+                    tmp.executeBatch();
+                if (actualizados > 0)
+                    upd.executeBatch();
+                if (insertados > 0)
+                    ins.executeBatch();
+                conn.commit();
+                if (eliminados + actualizados + insertados > 0)
+                    Database.avisarCambio();
+                msEscribir = (System.nanoTime() - finComparar) / 1_000_000;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(); // si algo falla la tabla queda como estaba
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return new Resultado(insertados, actualizados, eliminados, sinCambios, duplicados, repetidos, msComparar,
+                msEscribir);
+    }
+
+    // marca las filas (ya ordenadas por ID) cuyo nombre normalizado ya lo lleva otra fila. de cada grupo se
+    // queda la que ya tiene ese nombre en la tabla (asi no hay que mover nada) o si no la de menor ID.
+    // una fila marcada que ya esta en la tabla no se toca, asi que ahi conserva su nombre anterior: la fila
+    // del modelo que quiera ese nombre tampoco cabe y se marca (y si ella tambien ya estaba en la tabla,
+    // conserva el suyo, y asi hasta que nadie choque)
+    private static boolean[] nombresRepetidos(Connection conn, Producto[] ordenados) throws SQLException {
+        boolean[] repetido = new boolean[ordenados.length];
+        Map<String, Integer> ganador = new HashMap<>(ordenados.length * 2); // nombre -> fila que se lo queda
+        Map<String, List<Integer>> grupos = new HashMap<>();
+        for (int i = 0; i < ordenados.length; i++) {
+            if (i > 0 && ordenados[i].id == ordenados[i - 1].id)
+                continue;
+            String n = Database.normalizarNombre(ordenados[i].nombre);
+            Integer j = ganador.putIfAbsent(n, i);
+            if (j != null)
+                grupos.computeIfAbsent(n, k -> new ArrayList<>(List.of(j))).add(i);
+        }
+        if (grupos.isEmpty())
+            return repetido;
+        Deque<Integer> porRevisar = new ArrayDeque<>();
+        try (PreparedStatement buscar = conn.prepareStatement(
+                "SELECT ID FROM PRODUCTOS WHERE " + Database.NOMBRE_NORMALIZADO + " = ?");
+                PreparedStatement nombreDe = conn.prepareStatement("SELECT NOMBRE FROM PRODUCTOS WHERE ID = ?")) {
+            for (var g : grupos.entrySet()) {
+                int dueno = duenoDelNombre(buscar, g.getKey());
+                int gana = g.getValue().get(0);
+                for (int i : g.getValue()) {
+                    if (ordenados[i].id == dueno)
+                        gana = i;
+                }
+                ganador.put(g.getKey(), gana);
+                for (int i : g.getValue()) {
+                    if (i != gana) {
+                        repetido[i] = true;
+                        avisarRepetido(ordenados[i], ordenados[gana].id);
+                        porRevisar.push(i);
+                    }
+                }
+            }
+            while (!porRevisar.isEmpty()) {
+                int i = porRevisar.pop();
+                nombreDe.setInt(1, ordenados[i].id);
+                String anterior;
+                try (ResultSet rs = nombreDe.executeQuery()) {
+                    anterior = rs.next() ? rs.getString(1) : null;
+                }
+                if (anterior == null)
+                    continue; // no esta en la tabla: no aparta ningun nombre
+                Integer quiere = ganador.get(Database.normalizarNombre(anterior));
+                if (quiere != null && !repetido[quiere]) {
+                    repetido[quiere] = true;
+                    avisarRepetido(ordenados[quiere], ordenados[i].id);
+                    porRevisar.push(quiere);
+                }
+            }
+        }
+        return repetido;
+    }
+
+    // ID que tiene hoy ese nombre normalizado en la tabla (por el indice unico), o -1
+    private static int duenoDelNombre(PreparedStatement buscar, String normalizado) throws SQLException {
+        buscar.setString(1, normalizado);
+        try (ResultSet rs = buscar.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    private static void avisarRepetido(Producto p, int otroId) {
+        System.out.println("No se guardo el producto " + p.id + " (" + p.nombre + "): el producto " + otroId
+                + " ya tiene ese nombre");
+    }
+
+    // aplica solo los cambios que el modelo tiene registrados (ver InventarioModel.Pendientes) sin leer la tabla;
+    // el costo depende de cuantas filas se editaron y no del tamano del inventario.
+    // las filas nuevas pueden ya existir en la tabla (onCrear las inserta al momento) por eso se usa upsert.
+    // los nombres se revisan con el indice: una fila cuyo nombre lo tiene otro producto que no se esta
+    // guardando (o que va repetido en este mismo guardado) no se escribe
+    static Resultado aplicarCambios(List<Producto> nuevos, List<Producto> modificados, Collection<Integer> borrados)
+            throws SQLException {
+        long inicio = System.nanoTime();
+        if (nuevos.isEmpty() && modificados.isEmpty() && borrados.isEmpty()) {
+            return new Resultado(0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        List<Producto> filas = new ArrayList<>(nuevos.size() + modificados.size());
+        filas.addAll(nuevos);
+        filas.addAll(modificados);
+        int insertados = 0, actualizados = 0, repetidos = 0;
+        try (var lease = ConnectionPool.get().escritura()) {
+            Connection conn = lease.conn();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ups = conn.prepareStatement(
+                    "INSERT INTO PRODUCTOS(ID, NOMBRE, CANTIDAD, PRECIO_CENTAVOS) VALUES (?,?,?,?) "
+                            + "ON CONFLICT(ID) DO UPDATE SET NOMBRE = excluded.NOMBRE, "
+                            + "CANTIDAD = excluded.CANTIDAD, PRECIO_CENTAVOS = excluded.PRECIO_CENTAVOS");
+                    PreparedStatement tmp = conn.prepareStatement("UPDATE PRODUCTOS SET NOMBRE = ? WHERE ID = ?");
+                    PreparedStatement buscar = conn.prepareStatement(
+                            "SELECT ID FROM PRODUCTOS WHERE " + Database.NOMBRE_NORMALIZADO + " = ?");
+                    PreparedStatement del = conn.prepareStatement("DELETE FROM PRODUCTOS WHERE ID = ?")) {
+                for (int id : borrados) {
+                    del.setInt(1, id);
+                    del.addBatch();
+                }
+                if (!borrados.isEmpty())
+                    del.executeBatch();
+
+                // quien tiene hoy cada nombre (ya sin los borrados). un nombre cuyo dueno tambien se escribe
+                // no choca: ese dueno se pasa antes a un nombre temporal. si una fila no se puede escribir su
+                // dueno deja de "liberar" su nombre, por eso se repite hasta que ya no cambia nada
+                Map<String, Integer> duenos = new HashMap<>();
+                String[] normalizados = new String[filas.size()];
+                for (int k = 0; k < filas.size(); k++) {
+                    normalizados[k] = Database.normalizarNombre(filas.get(k).nombre);
+                    if (!duenos.containsKey(normalizados[k]))
+                        duenos.put(normalizados[k], duenoDelNombre(buscar, normalizados[k]));
+                }
+                boolean[] omitir = new boolean[filas.size()];
+                Set<Integer> escritos = new HashSet<>();
+                Set<Integer> liberar = new HashSet<>();
+                boolean otraVuelta = true;
+                while (otraVuelta) {
+                    otraVuelta = false;
+                    escritos.clear();
+                    for (int k = 0; k < filas.size(); k++) {
+                        if (!omitir[k])
+                            escritos.add(filas.get(k).id);
+                    }
+                    liberar.clear();
+                    Map<String, Integer> usados = new HashMap<>();
+                    for (int k = 0; k < filas.size(); k++) {
+                        if (omitir[k])
+                            continue;
+                        int id = filas.get(k).id;
+                        Integer otro = usados.putIfAbsent(normalizados[k], id);
+                        int dueno = duenos.get(normalizados[k]);
+                        if ((otro != null && otro != id) || (dueno >= 0 && dueno != id && !escritos.contains(dueno))) {
+                            omitir[k] = true;
+                            avisarRepetido(filas.get(k), otro != null && otro != id ? otro : dueno);
+                            otraVuelta = true;
+                        } else if (dueno >= 0 && dueno != id) {
+                            liberar.add(dueno);
+                        }
+                    }
+                }
+
+                for (int id : liberar) {
+                    tmp.setString(1, TEMPORAL + id);
+                    tmp.setInt(2, id);
+                    tmp.addBatch();
+                }
+                if (!liberar.isEmpty())
+                    tmp.executeBatch();
+
+                for (int k = 0; k < filas.size(); k++) {
+                    if (omitir[k]) {
+                        repetidos++;
+                        continue;
+                    }
+                    Producto p = filas.get(k);
+                    ups.setInt(1, p.id);
+                    ups.setString(2, p.nombre);
+                    ups.setInt(3, p.cantidad);
+                    ups.setLong(4, p.centavos);
+                    ups.addBatch();
+                    if (k < nuevos.size())
+                        insertados++;
+                    else
+                        actualizados++;
+                }
+                if (insertados + actualizados > 0)
+                    ups.executeBatch();
+                conn.commit();
+                if (!borrados.isEmpty() || insertados + actualizados > 0)
+                    Database.avisarCambio();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return new Resultado(insertados, actualizados, borrados.size(), 0, 0, repetidos, 0,
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+}
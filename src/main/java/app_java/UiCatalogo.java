@@ -0,0 +1,122 @@
+package app_java;
+
+import java.awt.BorderLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+// ventana para explorar el catalogo completo de la base de datos sin cargarlo en memoria
+// (tabla virtual con PagedInventarioModel). ordenar con clic en el encabezado y filtrar por nombre
+// se resuelven en sqlite, asi abre igual de rapido con cien productos que con millones
+class UiCatalogo extends JFrame {
+    private final JLabel lblEstado = new JLabel(" ");
+    private final PagedInventarioModel model = new PagedInventarioModel(lblEstado::setText);
+    private final JTable table = new JTable(model);
+    private final JTextField txtFilter = new JTextField(24);
+
+    UiCatalogo() {
+        super("Catálogo completo (base de datos)");
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        var top = new JPanel(new BorderLayout(8, 0));
+        top.setBorder(new EmptyBorder(6, 8, 6, 8));
+        top.add(new JLabel("Filtro:"), BorderLayout.WEST);
+        top.add(txtFilter, BorderLayout.CENTER);
+        add(top, BorderLayout.NORTH);
+
+        table.setAutoCreateRowSorter(false); // el orden lo hace sqlite, no la tabla
+        table.setFillsViewportHeight(true);
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int col = table.convertColumnIndexToModel(table.columnAtPoint(e.getPoint()));
+                if (col >= 0) {
+                    model.ordenarPor(col);
+                    actualizarEncabezados();
+                }
+            }
+        });
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        lblEstado.setBorder(new EmptyBorder(4, 8, 4, 8));
+        add(lblEstado, BorderLayout.SOUTH);
+
+        // el filtro espera a que se deje de escribir un momento para no consultar por cada tecla
+        Timer espera = new Timer(300, e -> model.filtrar(condicion(txtFilter.getText())));
+        espera.setRepeats(false);
+        txtFilter.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                espera.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                espera.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                espera.restart();
+            }
+        });
+
+        // la base cambio desde el inventario (cola de escritura, guardar, importar): se vuelve a contar y se
+        // descartan las paginas leidas. varios commits seguidos (una rafaga de ediciones) se juntan en una recarga
+        Timer recarga = new Timer(500, e -> model.recargar());
+        recarga.setRepeats(false);
+        Runnable alCambiar = () -> SwingUtilities.invokeLater(recarga::restart);
+        Database.alCambiar(alCambiar);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                Database.yaNoAvisar(alCambiar);
+                espera.stop();
+                recarga.stop();
+                model.cerrar();
+            }
+        });
+
+        actualizarEncabezados();
+        setSize(820, 560);
+        setLocationByPlatform(true);
+    }
+
+    // la misma consulta que el filtro del inventario ("cantidad<5 nombre:tornillo"), resuelta en sqlite
+    private Database.Condicion condicion(String texto) {
+        try {
+            txtFilter.setToolTipText(null);
+            return ConsultaFiltro.compilar(texto).aSql();
+        } catch (IllegalArgumentException e) {
+            txtFilter.setToolTipText(e.getMessage());
+            return Database.Condicion.texto(texto);
+        }
+    }
+
+    // marca en el encabezado la columna y direccion del orden
+    private void actualizarEncabezados() {
+        var columnas = table.getColumnModel();
+        for (int i = 0; i < columnas.getColumnCount(); i++) {
+            var c = columnas.getColumn(i);
+            int m = c.getModelIndex();
+            String nombre = model.getColumnName(m);
+            c.setHeaderValue(m == model.columnaOrden() ? nombre + (model.descendente() ? " ▼" : " ▲") : nombre);
+        }
+        table.getTableHeader().repaint();
+    }
+}
@@ -13,15 +13,11 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.*;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
 
 public class UiGeneral extends JFrame {
     public CardLayout cardLayout;
@@ -32,116 +28,12 @@ public class UiGeneral extends JFrame {
     public static final String VIEW_GENERAL = "General";
     public static final String VIEW_REPORTES = "Reportes";
 
-    // ======== Modelo de dominio ========
-
-    static class Producto { // producto es un objeto
-        final int id;// id para identificacion una del producto
-        String nombre;
-        int cantidad;
-        BigDecimal precio; // usar BigDecimal para dinero
-
-        Producto(int id, String nombre, int cantidad, BigDecimal precio) { // se crea un contructor para el objeto
-                                                                           // producto asi podemos instanciarlo
-            this.id = id;
-            this.nombre = nombre;
-            this.cantidad = cantidad;
-            this.precio = precio.setScale(2, RoundingMode.HALF_UP);
-        }
-    }
-
-    // ======== TableModel ========
-    static class InventarioModel extends AbstractTableModel { // le hereda toda la funcionalidad basica
-        private final String[] cols = { "ID", "Nombre", "Cantidad", "Precio", "Subtotal" }; // se crean las columnas
-        private final Class<?>[] types = { Integer.class, String.class, Integer.class, BigDecimal.class, // su tipo de
-                                                                                                         // dato
-                BigDecimal.class };
-        private final List<Producto> data = shoppingCart(); // que los datos de Producto sean los obtenidos de la base
-                                                            // de datos de sqlite
-
-        private List<Producto> shoppingCart() { // todos los componentes de la lista deben de ser Producto
-            List<Producto> lista = new ArrayList<>();
-
-            return lista; // la funcion retorna la lista que va a mostar
-        }
-
-        @Override
-        public int getRowCount() {
-            return data.size();
-        }
-
-        @Override
-        public int getColumnCount() {
-            return cols.length;
-        }
-
-        @Override
-        public String getColumnName(int c) {
-            return cols[c];
-        }
-
-        @Override
-        public Class<?> getColumnClass(int c) {
-            return types[c];
-        }
-
-        @Override
-        public boolean isCellEditable(int r, int c) {
-            return false;
-        }
-
-        @Override
-        public Object getValueAt(int row, int col) {
-            var p = data.get(row);
-            return switch (col) {
-                case 0 -> p.id;
-                case 1 -> p.nombre;
-                case 2 -> p.cantidad;
-                case 3 -> p.precio;
-                case 4 -> p.precio.multiply(new BigDecimal(p.cantidad)).setScale(2, RoundingMode.HALF_UP);
-                default -> "";
-            };
-        }
-
-        public Producto get(int row) {
-            return data.get(row); // retorna los datos obtenidos del (get) de la fila
-        }
-
-        public void setAll(List<Producto> list) { // metodo de importacion
-            data.clear(); // limpia los datos actuales
-            fireTableDataChanged(); // le avisa a la tabla anterior que sus datos han cambiado
-        }
-
-        public void add(Producto p) { // funcion para agregar un producto
-            data.add(p); // los datos son pasados como parametros al objeto de Producto que su instancia
-                         // es p
-            int idx = data.size() - 1; // le dice en donde se agregara la nueva fila, 1 antes de la que a esta
-            fireTableRowsInserted(idx, idx); // le avisa a la tabla vieja que fue insertado una nueva fila
-        }
-
-        public void update(int row, Producto p) { // esta funcion actuliza los datos ocupa los parametros de fila y
-                                                  // producto
-            data.set(row, p); // cambia los datos enviando de parametros la fila(row) y el producto
-            fireTableRowsUpdated(row, row); // le avisa a la tabla vieja que fila fue actualizada
-        }
-
-        public void remove(int row) { // la funcion de borrar obtiene de parametro la fila
-            var p = data.get(row); // se obtiene losd atos de la fila
-            Database.DeleteProduct(p.id); // se borra el elemento de la base de datos basado en su id
-
-            data.remove(row); // aqui se borra la fila del lado del frontend.
-            fireTableRowsDeleted(row, row);
-        }
-
-        public List<Producto> all() { // aqui se retorna todda la lista
-            return data;
-        }
-    }
-
     // ======== Estado/UI ========
-    private final InventarioModel model = new InventarioModel(); // Crea el modelo de datos del inventario.
+    private final InventarioModel model = new InventarioModel(false); // Crea el modelo de datos del inventario.
 
     private final JTable table = new JTable(model); // Crea una tabla grafica usando el model del inventario
     private TableRowSorter<TableModel> sorter; // filtrado de filas, ordenar el contenido de la tabla.
+    private FiltroTabla filtro; // filtro por nombre en segundo plano
     private final JTextField txtFilter = new JTextField(18); // Input donde el usuario escribe para filtrar elementos.
     private final JLabel lblTotal = new JLabel("Items: 0 | Total: $0.00"); // Etiqueta que muestra el total de articulos
                                                                            // , moneasdas del inv.
@@ -154,6 +46,8 @@ public class UiGeneral extends JFrame {
     private JPanel toolbar; // Estos dos son paneles de la parte superior (Toolbar) y de la (barra de
                             // estado).
     private JPanel status; //
+    private JButton btnGuardar; // se desactivan mientras se guarda un CSV
+    private JMenuItem miGuardar;
     private Dimension filterBaseSize; // Guarda el size original del campo de filtro, para recalcularlo al escalar la
                                       // UI.
 
@@ -246,7 +140,7 @@ public class UiGeneral extends JFrame {
 
         var btnBorrar = makeButton("Borrar"); // Botón para borrar ítem
         var btnMostrar = makeButton("Mostrar"); // Botón para mostrar detalles
-        var btnGuardar = makeButton("Guardar"); // Botón para guardar CSV
+        btnGuardar = makeButton("Guardar"); // Botón para guardar CSV
         var btnAbrir = makeButton("Abrir"); // Botón para abrir CSV
         var btnZoomIn = makeButton("Zoom +"); // Aumentar zoom UI
         var btnZoomOut = makeButton("Zoom −"); // Reducir zoom UI
@@ -399,7 +293,7 @@ public class UiGeneral extends JFrame {
         JMenu mFile = new JMenu("Archivo"); // menu de archivo
         JMenuItem miNuevo = new JMenuItem("Nuevo (limpiar)");
         JMenuItem miAbrir = new JMenuItem("Abrir CSV…");
-        JMenuItem miGuardar = new JMenuItem("Guardar CSV…");
+        miGuardar = new JMenuItem("Guardar CSV…");
         JMenuItem miSalir = new JMenuItem("Salir");
 
         miNuevo.addActionListener(e -> {
@@ -467,27 +361,25 @@ public class UiGeneral extends JFrame {
     private void onCrear() {
         var p = showProductoDialog(null);
         if (p != null) {
-            // 1) Insertar en BD
-            if (!Database.productExist(p.nombre)) {
-                int idGenerado = Database.insertProduct(
-                        p.nombre,
-                        p.cantidad,
-                        p.precio.doubleValue());
-
-                if (idGenerado != -1) {
-                    // 2) Producto con ID real
-                    var conIdReal = new Producto(idGenerado, p.nombre, p.cantidad, p.precio);
-
-                    // 3) Solo agregar al modelo
-                    model.add(conIdReal);
-                    selectLastRow();
-                    updateTotals();
-                } else {
-                    error("No se pudo insertar el producto en la base de datos.");
-                }
-            } else {
-                error("El produto ya existe, favor de editarlo o eliminarlo");
-            }
+            // 1) Insertar en BD desde la cola de escritura (el hilo de swing no espera al disco);
+            // una sola sentencia que inserta solo si el nombre no existe
+            WriteBehindQueue.get()
+                    .enviar(conn -> Database.upsertProduct(conn, p.nombre, p.cantidad, p.centavos))
+                    .whenComplete((r, ex) -> SwingUtilities.invokeLater(() -> {
+                        if (ex != null) {
+                            error("No se pudo insertar el producto en la base de datos.\n" + ex.getMessage());
+                        } else if (!r.creado()) {
+                            error("El produto ya existe, favor de editarlo o eliminarlo");
+                        } else {
+                            // 2) Producto con ID real
+                            var conIdReal = new Producto(r.id(), p.nombre, p.cantidad, p.centavos);
+
+                            // 3) Solo agregar al modelo
+                            model.add(conIdReal);
+                            selectLastRow();
+                            updateTotals();
+                        }
+                    }));
         }
 
     }
@@ -504,18 +396,27 @@ public class UiGeneral extends JFrame {
 
         var p = showProductoDialog(base);
         if (p != null) {
-            // 1) Actualizar en base de datos usando el ID existente
-            Database.updateProduct(
-                    base.id,
-                    p.nombre,
-                    p.cantidad,
-                    p.precio.doubleValue());
-
-            // 2) Mantener el mismo ID en el modelo
-            var actualizado = new Producto(base.id, p.nombre, p.cantidad, p.precio);
+            // 1) Mantener el mismo ID en el modelo; el cambio se ve de inmediato
+            var actualizado = new Producto(base.id, p.nombre, p.cantidad, p.centavos);
             model.update(modelRow, actualizado);
 
             updateTotals();
+
+            // 2) Actualizar en base de datos desde la cola; si falla se regresa el producto como estaba
+            WriteBehindQueue.get()
+                    .enviar(conn -> Database.updateProduct(conn, base.id, p.nombre, p.cantidad, p.centavos))
+                    .whenComplete((rows, ex) -> {
+                        if (ex == null)
+                            return;
+                        SwingUtilities.invokeLater(() -> {
+                            int fila = model.indexOfId(base.id);
+                            if (fila >= 0 && model.get(fila).mismosDatos(actualizado)) { // nadie lo volvio a editar
+                                model.update(fila, base);
+                                updateTotals();
+                            }
+                            error("No se pudo guardar el cambio, se restauró el producto:\n" + ex.getMessage());
+                        });
+                    });
         }
     }
 
@@ -528,8 +429,23 @@ public class UiGeneral extends JFrame {
         int modelRow = table.convertRowIndexToModel(row);
         var p = model.get(modelRow);
         if (confirm("¿Borrar el producto ID " + p.id + " (" + p.nombre + ")?")) {
-            model.remove(modelRow);
+            model.remove(modelRow); // se quita de la tabla de inmediato
             updateTotals();
+
+            // se borra de la base de datos desde la cola; si falla el producto regresa a la tabla
+            WriteBehindQueue.get()
+                    .enviar(conn -> Database.DeleteProduct(conn, p.id))
+                    .whenComplete((rows, ex) -> {
+                        if (ex == null)
+                            return;
+                        SwingUtilities.invokeLater(() -> {
+                            if (model.indexOfId(p.id) < 0) {
+                                model.add(p);
+                                updateTotals();
+                            }
+                            error("No se pudo borrar el producto, se restauró:\n" + ex.getMessage());
+                        });
+                    });
         }
     }
 
@@ -551,11 +467,8 @@ public class UiGeneral extends JFrame {
         // Obtiene el producto correspondiente a esa fila en el modelo
         var p = model.get(modelRow);
 
-        // Calcula el subtotal multiplicando precio por cantidad
-        // Se ajusta a 2 decimales con redondeo HALF_UP
-        BigDecimal subtotal = p.precio
-                .multiply(new BigDecimal(p.cantidad))
-                .setScale(2, RoundingMode.HALF_UP);
+        // Calcula el subtotal multiplicando precio por cantidad (en centavos, exacto)
+        BigDecimal subtotal = Producto.deCentavos(p.subtotalCentavos());
 
         // Muestra un mensaje informativo con los datos del producto
         info("""
@@ -570,101 +483,67 @@ public class UiGeneral extends JFrame {
                 p.id,
                 p.nombre,
                 p.cantidad,
-                moneyFmt.format(p.precio),
+                moneyFmt.format(p.precio()),
                 moneyFmt.format(subtotal)));
     }
 
     // ======== Filtro ========
+    // se busca en otro hilo cuando se deja de escribir (ver FiltroTabla); la tabla no se traba al teclear
     private void applyFilter() {
-        String q = txtFilter.getText().trim();
-        if (q.isEmpty()) {
-            sorter.setRowFilter(null);
-            return;
-        }
-        sorter.setRowFilter(RowFilter.regexFilter("(?i)" + Pattern.quote(q), 1)); // columna Nombre
+        if (filtro == null)
+            filtro = new FiltroTabla(table, model, txtFilter::setToolTipText);
+        // ej. "tornillo", "cantidad<5 precio>=100 nombre:llave"; si no se entiende se avisa en el tooltip
+        txtFilter.setToolTipText(filtro.programar(txtFilter.getText()));
     }
 
     // ======== Persistencia CSV ========
+    // el archivo se escribe en otro hilo desde una foto del modelo (ver CsvExporter): se puede seguir
+    // editando mientras se guarda y lo editado no entra al archivo. en ese mismo hilo, antes del archivo,
+    // SQLite se sincroniza con la misma foto: la base y el CSV quedan con el mismo inventario
     private void onGuardarCSV() {
+        if (!btnGuardar.isEnabled())
+            return; // ya se esta guardando (Ctrl+S no pasa por el boton)
         var fc = createCSVChooser("Guardar inventario");
         if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File f = ensureCsvExtension(fc.getSelectedFile());
-            try (var out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8))) {
-                out.println("id,nombre,cantidad,precio");
-                for (var p : model.all()) {
-                    out.printf("%d,%s,%d,%s%n",
-                            p.id,
-                            escapeCsv(p.nombre),
-                            p.cantidad,
-                            p.precio);
+            guardando(true);
+            var foto = model.snapshotAlDia();
+            // compara la foto con la tabla y aplica solo las diferencias en una sola transaccion;
+            // si algo falla se deshace todo y la tabla queda como estaba
+            CsvExporter.exportar(this, f, foto, () -> SyncEngine.sincronizar(foto.productos()), r -> {
+                guardando(false);
+                if (r.error() != null) {
+                    error("No se pudo guardar:\n" + r.error());
+                } else if (!r.cancelado()) {
+                    info("Guardado en:\n" + f.getAbsolutePath() + "\n" + r);
                 }
-                info("Guardado en:\n" + f.getAbsolutePath());
-
-                // Luego de guardar el CSV, sincronizamos SQLite con el modelo/CSV. ATT tu compi
-                // el BOR
-                syncModelToDatabase();
-
-            } catch (IOException ex) {
-                error("No se pudo guardar:\n" + ex.getMessage());
-            }
+            });
         }
     }
 
-    // Sincronizar todo el modelo con la base de datos
-    private void syncModelToDatabase() {
-        try {
-            // 1) Vaciar la tabla en la base de datos
-            Database.clearProducts();
-
-            // 2) Insertar de nuevo todo lo que hay en el modelo
-            for (var p : model.all()) {
-                Database.insertProductWithId(
-                        p.id,
-                        p.nombre,
-                        p.cantidad,
-                        p.precio.doubleValue());
-            }
-
-            System.out.println("Sincronización modelo → SQLite completada.");
-        } catch (Exception e) {
-            e.printStackTrace();
-            error("Error al sincronizar con la base de datos:\n" + e.getMessage());
-        }
+    private void guardando(boolean si) {
+        btnGuardar.setEnabled(!si);
+        miGuardar.setEnabled(!si);
     }
 
+    // la importacion corre en otro hilo con una ventana de avance (ver CsvImporter); si se cancela o falla,
+    // la tabla y la base quedan como estaban. se puede reemplazar todo o unir un archivo parcial
     private void onAbrirCSV() {
         var fc = createCSVChooser("Abrir inventario");
         if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File f = fc.getSelectedFile();
-            try (var br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
-                String line;
-                List<Producto> list = new ArrayList<>();
-                int maxId = 0;
-                boolean headerSkipped = false;
-                while ((line = br.readLine()) != null) {
-                    if (!headerSkipped) {
-                        headerSkipped = true;
-                        continue;
-                    }
-                    String[] parts = parseCsvLine(line, 4);
-                    int id = Integer.parseInt(parts[0]);
-                    String nombre = parts[1];
-                    int cantidad = Integer.parseInt(parts[2]);
-                    BigDecimal precio = new BigDecimal(parts[3]).setScale(2, RoundingMode.HALF_UP);
-                    list.add(new Producto(id, nombre, cantidad, precio));
-                    maxId = Math.max(maxId, id);
-                }
-
-                model.setAll(list);
+            var modo = (CsvImporter.Modo) JOptionPane.showInputDialog(this, "¿Cómo aplicar " + f.getName() + "?",
+                    "Importar CSV", JOptionPane.QUESTION_MESSAGE, null, CsvImporter.Modo.values(),
+                    CsvImporter.Modo.REEMPLAZAR);
+            if (modo == null)
+                return;
+            CsvImporter.importar(this, f, model, modo, r -> {
                 updateTotals();
-                info("Cargado desde:\n" + f.getAbsolutePath());
-
-                // Despues de cargar desde CSV, hacemos que SQLite quede igual que el archivo
-                syncModelToDatabase();
-
-            } catch (Exception ex) {
-                error("No se pudo abrir:\n" + ex.getMessage());
-            }
+                if (r.error() != null)
+                    error("No se pudo abrir:\n" + r.error());
+                else if (!r.cancelado())
+                    info("Cargado desde:\n" + f.getAbsolutePath() + "\n" + r);
+            });
         }
     }
 
@@ -679,45 +558,6 @@ public class UiGeneral extends JFrame {
         return f.getName().toLowerCase().endsWith(".csv") ? f : new File(f.getParentFile(), f.getName() + ".csv");
     }
 
-    private static String escapeCsv(String s) {
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            s = s.replace("\"", "\"\"");
-            return "\"" + s + "\"";
-        }
-        return s;
-    }
-
-    private static String[] parseCsvLine(String line, int expected) {
-        List<String> out = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        boolean inQ = false;
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (inQ) {
-                if (c == '"') {
-                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                        sb.append('"');
-                        i++;
-                    } else
-                        inQ = false;
-                } else
-                    sb.append(c);
-            } else {
-                if (c == ',') {
-                    out.add(sb.toString());
-                    sb.setLength(0);
-                } else if (c == '"')
-                    inQ = true;
-                else
-                    sb.append(c);
-            }
-        }
-        out.add(sb.toString());
-        if (out.size() != expected)
-            throw new IllegalArgumentException("CSV inválido");
-        return out.toArray(String[]::new);
-    }
-
     // ======== Dialog crear/editar ========
     private Producto showProductoDialog(Producto base) {
         // Campo de texto para nombre (22 columnas)
@@ -733,7 +573,7 @@ public class UiGeneral extends JFrame {
         // Si se esta editando un producto, cargar sus datos en los campos
         if (base != null) {
             txtNombre.setText(base.nombre);
-            txtPrecio.setText(base.precio.toPlainString());
+            txtPrecio.setText(base.precio().toPlainString());
         }
 
         // Panel del formulario con GridBagLayout
@@ -821,11 +661,9 @@ public class UiGeneral extends JFrame {
 
     // ======== Totales ========
     private void updateTotals() {
-        int items = model.getRowCount();
-        BigDecimal total = new BigDecimal("0.00");
-        for (var p : model.all())
-            total = total.add(p.precio.multiply(new BigDecimal(p.cantidad)));
-        lblTotal.setText("Items: " + items + "  |  Total: $" + moneyFmt.format(total));
+        var t = model.totales(); // el modelo los lleva al dia, no se recorre la tabla
+        lblTotal.setText("Items: " + t.productos() + "  |  Unidades: " + t.unidades()
+                + "  |  Total: $" + moneyFmt.format(Producto.deCentavos(t.centavos())));
     }
 
     // ======== Zoom ========
@@ -13,152 +13,20 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.*;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
-
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 
 public class UiInventario extends JFrame {
 
-    // ======== Modelo de dominio ========
-
-    static class Producto { // producto es un objeto
-        final int id;// id para identificacion una del producto
-        String nombre;
-        int cantidad;
-        BigDecimal precio; // usar BigDecimal para dinero
-
-        Producto(int id, String nombre, int cantidad, BigDecimal precio) { // se crea un contructor para el objeto
-                                                                           // producto asi podemos instanciarlo
-            this.id = id;
-            this.nombre = nombre;
-            this.cantidad = cantidad;
-            this.precio = precio.setScale(2, RoundingMode.HALF_UP);
-        }
-    }
-
-    // ======== TableModel ========
-    static class InventarioModel extends AbstractTableModel { // le hereda toda la funcionalidad basica
-        private final String[] cols = { "ID", "Nombre", "Cantidad", "Precio", "Subtotal" }; // se crean las columnas
-        private final Class<?>[] types = { Integer.class, String.class, Integer.class, BigDecimal.class, // su tipo de
-                                                                                                         // dato
-                BigDecimal.class };
-        private final List<Producto> data = ProductListSQL(); // que los datos de Producto sean los obtenidos de la base
-                                                              // de datos de sqlite
-
-        private List<Producto> ProductListSQL() { // todos los componentes de la lista deben de ser Producto
-            List<Producto> lista = new ArrayList<>();
-
-            Database.CrearDB(); // instanciamos la base de datos para que se inicialize
-
-            try (ResultSet rs = Database.showProducts()) { // espera todos los datos de la base de datos para mostrarlos
-
-                while (rs.next()) {
-                    Producto p = new Producto(
-                            rs.getInt("ID"),
-                            rs.getString("NOMBRE"), // aqui respuesta del try son los datos de la base de datos para
-                                                    // agregarlo a los atributos de Producto
-                            rs.getInt("CANTIDAD"),
-                            BigDecimal.valueOf(rs.getDouble("PRECIO")) // usa BigDecimal
-                    );
-                    lista.add(p); // la lista agrega una instancia del objeto Producto por cada iteracion
-                }
-            } catch (Exception e) { // en caso de que no exista manda error
-                e.printStackTrace();
-            }
-
-            return lista; // la funcion retorna la lista que va a mostar
-        }
-
-        @Override
-        public int getRowCount() {
-            return data.size();
-        }
-
-        @Override
-        public int getColumnCount() {
-            return cols.length;
-        }
-
-        @Override
-        public String getColumnName(int c) {
-            return cols[c];
-        }
-
-        @Override
-        public Class<?> getColumnClass(int c) {
-            return types[c];
-        }
-
-        @Override
-        public boolean isCellEditable(int r, int c) {
-            return false;
-        }
-
-        @Override
-        public Object getValueAt(int row, int col) {
-            var p = data.get(row);
-            return switch (col) {
-                case 0 -> p.id;
-                case 1 -> p.nombre;
-                case 2 -> p.cantidad;
-                case 3 -> p.precio;
-                case 4 -> p.precio.multiply(new BigDecimal(p.cantidad)).setScale(2, RoundingMode.HALF_UP);
-                default -> "";
-            };
-        }
-
-        public Producto get(int row) {
-            return data.get(row); // retorna los datos obtenidos del (get) de la fila
-        }
-
-        public void setAll(List<Producto> list) { // metodo de importacion
-            data.clear(); // limpia los datos
-            data.addAll(list); // copia los datos del csv
-            fireTableDataChanged(); // le avisa a la tabla anterior que sus datos han cambiado
-        }
-
-        public void add(Producto p) { // funcion para agregar un producto
-            data.add(p); // los datos son pasados como parametros al objeto de Producto que su instancia
-                         // es p
-            int idx = data.size() - 1; // le dice en donde se agregara la nueva fila, 1 antes de la que a esta
-            fireTableRowsInserted(idx, idx); // le avisa a la tabla vieja que fue insertado una nueva fila
-        }
-
-        public void update(int row, Producto p) { // esta funcion actuliza los datos ocupa los parametros de fila y
-                                                  // producto
-            data.set(row, p); // cambia los datos enviando de parametros la fila(row) y el producto
-            fireTableRowsUpdated(row, row); // le avisa a la tabla vieja que fila fue actualizada
-        }
-
-        public void remove(int row) { // la funcion de borrar obtiene de parametro la fila
-            var p = data.get(row); // se obtiene losd atos de la fila
-            Database.DeleteProduct(p.id); // se borra el elemento de la base de datos basado en su id
-
-            data.remove(row); // aqui se borra la fila del lado del frontend.
-            fireTableRowsDeleted(row, row);
-        }
-
-        public List<Producto> all() { // aqui se retorna todda la lista
-            return data;
-        }
-    }
-
     // ======== Estado/UI ========
-    private final InventarioModel model = new InventarioModel(); // Crea el modelo de datos del inventario.
+    private final InventarioModel model = new InventarioModel(true); // Crea el modelo de datos del inventario.
     private final JTable table = new JTable(model); // Crea una tabla grafica usando el model del inventario
     private TableRowSorter<TableModel> sorter; // filtrado de filas, ordenar el contenido de la tabla.
+    private FiltroTabla filtro; // filtro por nombre en segundo plano
     private final JTextField txtFilter = new JTextField(18); // Input donde el usuario escribe para filtrar elementos.
     private final JLabel lblTotal = new JLabel("Items: 0 | Total: $0.00"); // Etiqueta que muestra el total de articulos
                                                                            // , moneasdas del inv.
@@ -171,6 +39,8 @@ public class UiInventario extends JFrame {
     private JPanel toolbar; // Estos dos son paneles de la parte superior (Toolbar) y de la (barra de
                             // estado).
     private JPanel status; //
+    private JButton btnGuardar; // se desactivan mientras se guarda un CSV
+    private JMenuItem miGuardar;
     private Dimension filterBaseSize; // Guarda el size original del campo de filtro, para recalcularlo al escalar la
                                       // UI.
 
@@ -264,7 +134,7 @@ public class UiInventario extends JFrame {
         var btnEditar = makeButton("Editar"); // Botón para editar ítem
         var btnBorrar = makeButton("Borrar"); // Botón para borrar ítem
         var btnMostrar = makeButton("Mostrar"); // Botón para mostrar detalles
-        var btnGuardar = makeButton("Guardar"); // Botón para guardar CSV
+        btnGuardar = makeButton("Guardar"); // Botón para guardar CSV
         var btnAbrir = makeButton("Abrir"); // Botón para abrir CSV
         var btnZoomIn = makeButton("Zoom +"); // Aumentar zoom UI
         var btnZoomOut = makeButton("Zoom −"); // Reducir zoom UI
@@ -329,6 +199,7 @@ public class UiInventario extends JFrame {
         table.setIntercellSpacing(new Dimension(0, 0));// Sin espacio entre celdas
         table.setAutoCreateRowSorter(true); // Activa ordenamiento de columnas
         sorter = (TableRowSorter<TableModel>) table.getRowSorter(); // Guarda el sorter
+        sorter.setComparator(1, model.comparadorNombres()); // Nombre en orden alfabetico español
         add(new JScrollPane(table), BorderLayout.CENTER); // Tabla dentro de scroll
 
         // ======== Status bar ========
@@ -393,6 +264,17 @@ public class UiInventario extends JFrame {
         // ======== Atajos ========
         installShortcuts(); // Configura atajos de teclado globales
 
+        // ======== Escaner ========
+        // cada codigo que llega por /api/id selecciona su fila (la busqueda por ID es O(1) en el modelo)
+        java.util.function.Consumer<String> alEscanear = codigo -> SwingUtilities.invokeLater(() -> seleccionarCodigo(codigo));
+        EscanerController.alEscanear(alEscanear);
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                EscanerController.quitar(alEscanear);
+            }
+        });
+
         updateTotals(); // Calcula y muestra totales iniciales
 
         // THEME: aplicar el tema inicial (claro)
@@ -416,7 +298,7 @@ public class UiInventario extends JFrame {
         JMenu mFile = new JMenu("Archivo"); // menu de archivo
         JMenuItem miNuevo = new JMenuItem("Nuevo (limpiar)");
         JMenuItem miAbrir = new JMenuItem("Abrir CSV…");
-        JMenuItem miGuardar = new JMenuItem("Guardar CSV…");
+        miGuardar = new JMenuItem("Guardar CSV…");
         JMenuItem miSalir = new JMenuItem("Salir");
 
         miNuevo.addActionListener(e -> {
@@ -445,12 +327,16 @@ public class UiInventario extends JFrame {
         JMenuItem miCrear = new JMenuItem("Crear");
         JMenuItem miEditar = new JMenuItem("Editar");
         JMenuItem miBorrar = new JMenuItem("Borrar");
+        JMenuItem miBuscar = new JMenuItem("Buscar en catálogo…");
         miCrear.addActionListener(e -> onCrear());
         miEditar.addActionListener(e -> onEditar());
         miBorrar.addActionListener(e -> onBorrar());
+        miBuscar.addActionListener(e -> onBuscarCatalogo());
         mEdit.add(miCrear);
         mEdit.add(miEditar);
         mEdit.add(miBorrar);
+        mEdit.addSeparator();
+        mEdit.add(miBuscar);
 
         JMenu mView = new JMenu("Vista");
         JMenuItem miZoomIn = new JMenuItem("Zoom +");
@@ -462,6 +348,19 @@ public class UiInventario extends JFrame {
         mView.add(miZoomIn);
         mView.add(miZoomOut);
         mView.add(miZoomReset);
+        mView.addSeparator();
+        JMenuItem miMemoria = new JMenuItem("Uso de memoria…");
+        // columnas vs lista de objetos, y lo que cuestan las fotos para otros hilos
+        miMemoria.addActionListener(e -> info(model.memoria() + "\n\n" + model.metricasSnapshot()));
+        mView.add(miMemoria);
+        JMenuItem miBase = new JMenuItem("Métricas de la base de datos…");
+        // prestamos del pool de conexiones y lotes de la cola de escritura (group commit)
+        miBase.addActionListener(e -> info("Pool de conexiones\n" + ConnectionPool.get().metricas()
+                + "\n\nCola de escritura\n" + WriteBehindQueue.get().metricas()));
+        mView.add(miBase);
+        JMenuItem miCatalogo = new JMenuItem("Explorar catálogo completo…");
+        miCatalogo.addActionListener(e -> new UiCatalogo().setVisible(true)); // tabla virtual, sin cargar todo
+        mView.add(miCatalogo);
 
         JMenu mHelp = new JMenu("Ayuda");
         JMenuItem miAbout = new JMenuItem("Acerca de…");
@@ -482,27 +381,25 @@ public class UiInventario extends JFrame {
     private void onCrear() {
         var p = showProductoDialog(null);
         if (p != null) {
-            // 1) Insertar en BD
-            if (!Database.productExist(p.nombre)) {
-                int idGenerado = Database.insertProduct(
-                        p.nombre,
-                        p.cantidad,
-                        p.precio.doubleValue());
-
-                if (idGenerado != -1) {
-                    // 2) Producto con ID real
-                    var conIdReal = new Producto(idGenerado, p.nombre, p.cantidad, p.precio);
-
-                    // 3) Solo agregar al modelo
-                    model.add(conIdReal);
-                    selectLastRow();
-                    updateTotals();
-                } else {
-                    error("No se pudo insertar el producto en la base de datos.");
-                }
-            } else {
-                error("El produto ya existe, favor de editarlo o eliminarlo");
-            }
+            // 1) Insertar en BD desde la cola de escritura (el hilo de swing no espera al disco);
+            // una sola sentencia que inserta solo si el nombre no existe
+            WriteBehindQueue.get()
+                    .enviar(conn -> Database.upsertProduct(conn, p.nombre, p.cantidad, p.centavos))
+                    .whenComplete((r, ex) -> SwingUtilities.invokeLater(() -> {
+                        if (ex != null) {
+                            error("No se pudo insertar el producto en la base de datos.\n" + ex.getMessage());
+                        } else if (!r.creado()) {
+                            error("El produto ya existe, favor de editarlo o eliminarlo");
+                        } else {
+                            // 2) Producto con ID real
+                            var conIdReal = new Producto(r.id(), p.nombre, p.cantidad, p.centavos);
+
+                            // 3) Solo agregar al modelo
+                            model.add(conIdReal);
+                            selectLastRow();
+                            updateTotals();
+                        }
+                    }));
         }
 
     }
@@ -519,18 +416,27 @@ public class UiInventario extends JFrame {
 
         var p = showProductoDialog(base);
         if (p != null) {
-            // 1) Actualizar en base de datos usando el ID existente
-            Database.updateProduct(
-                    base.id,
-                    p.nombre,
-                    p.cantidad,
-                    p.precio.doubleValue());
-
-            // 2) Mantener el mismo ID en el modelo
-            var actualizado = new Producto(base.id, p.nombre, p.cantidad, p.precio);
+            // 1) Mantener el mismo ID en el modelo; el cambio se ve de inmediato
+            var actualizado = new Producto(base.id, p.nombre, p.cantidad, p.centavos);
             model.update(modelRow, actualizado);
 
             updateTotals();
+
+            // 2) Actualizar en base de datos desde la cola; si falla se regresa el producto como estaba
+            WriteBehindQueue.get()
+                    .enviar(conn -> Database.updateProduct(conn, base.id, p.nombre, p.cantidad, p.centavos))
+                    .whenComplete((rows, ex) -> {
+                        if (ex == null)
+                            return;
+                        SwingUtilities.invokeLater(() -> {
+                            int fila = model.indexOfId(base.id);
+                            if (fila >= 0 && model.get(fila).mismosDatos(actualizado)) { // nadie lo volvio a editar
+                                model.update(fila, base);
+                                updateTotals();
+                            }
+                            error("No se pudo guardar el cambio, se restauró el producto:\n" + ex.getMessage());
+                        });
+                    });
         }
     }
 
@@ -543,8 +449,23 @@ public class UiInventario extends JFrame {
         int modelRow = table.convertRowIndexToModel(row);
         var p = model.get(modelRow);
         if (confirm("¿Borrar el producto ID " + p.id + " (" + p.nombre + ")?")) {
-            model.remove(modelRow);
+            model.remove(modelRow); // se quita de la tabla de inmediato
             updateTotals();
+
+            // se borra de la base de datos desde la cola; si falla el producto regresa a la tabla
+            WriteBehindQueue.get()
+                    .enviar(conn -> Database.DeleteProduct(conn, p.id))
+                    .whenComplete((rows, ex) -> {
+                        if (ex == null)
+                            return;
+                        SwingUtilities.invokeLater(() -> {
+                            if (model.indexOfId(p.id) < 0) {
+                                model.add(p);
+                                updateTotals();
+                            }
+                            error("No se pudo borrar el producto, se restauró:\n" + ex.getMessage());
+                        });
+                    });
         }
     }
 
@@ -566,11 +487,8 @@ public class UiInventario extends JFrame {
         // Obtiene el producto correspondiente a esa fila en el modelo
         var p = model.get(modelRow);
 
-        // Calcula el subtotal multiplicando precio por cantidad
-        // Se ajusta a 2 decimales con redondeo HALF_UP
-        BigDecimal subtotal = p.precio
-                .multiply(new BigDecimal(p.cantidad))
-                .setScale(2, RoundingMode.HALF_UP);
+        // Calcula el subtotal multiplicando precio por cantidad (en centavos, exacto)
+        BigDecimal subtotal = Producto.deCentavos(p.subtotalCentavos());
 
         // Muestra un mensaje informativo con los datos del producto
         info("""
@@ -585,101 +503,158 @@ public class UiInventario extends JFrame {
                 p.id,
                 p.nombre,
                 p.cantidad,
-                moneyFmt.format(p.precio),
+                moneyFmt.format(p.precio()),
                 moneyFmt.format(subtotal)));
     }
 
     // ======== Filtro ========
+    // se busca en otro hilo cuando se deja de escribir (ver FiltroTabla); la tabla no se traba al teclear
     private void applyFilter() {
-        String q = txtFilter.getText().trim();
-        if (q.isEmpty()) {
-            sorter.setRowFilter(null);
+        if (filtro == null)
+            filtro = new FiltroTabla(table, model, txtFilter::setToolTipText);
+        // ej. "tornillo", "cantidad<5 precio>=100 nombre:llave"; si no se entiende se avisa en el tooltip
+        txtFilter.setToolTipText(filtro.programar(txtFilter.getText()));
+    }
+
+    // ======== Busqueda en catalogo ========
+    // busca en la base de datos con el indice de texto completo (no solo en las filas cargadas en la tabla).
+    // los resultados vienen por relevancia; doble clic selecciona el producto en la tabla si esta cargado
+    private void onBuscarCatalogo() {
+        String q = JOptionPane.showInputDialog(this, "Buscar producto por nombre (palabras o prefijos):",
+                txtFilter.getText().trim());
+        if (q == null || q.isBlank())
+            return;
+        new SwingWorker<List<Producto>, Void>() {
+            @Override
+            protected List<Producto> doInBackground() throws Exception {
+                return Database.searchProducts(q, 200); // fuera del hilo de swing
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    mostrarResultados(q, get());
+                } catch (Exception ex) {
+                    error("No se pudo buscar:\n" + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void mostrarResultados(String q, List<Producto> resultados) {
+        if (resultados.isEmpty()) {
+            info("Sin resultados para: " + q);
+            return;
+        }
+        var tm = new DefaultTableModel(new Object[] { "ID", "Nombre", "Cantidad", "Precio" }, 0) {
+            @Override
+            public boolean isCellEditable(int r, int c) {
+                return false;
+            }
+        };
+        for (var p : resultados) {
+            tm.addRow(new Object[] { p.id, p.nombre, p.cantidad, moneyFmt.format(p.precio()) });
+        }
+        JTable tabla = new JTable(tm);
+        JDialog dlg = new JDialog(this, "Resultados: " + q + " (" + resultados.size() + ")", false);
+        tabla.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int r = tabla.getSelectedRow();
+                if (e.getClickCount() == 2 && r >= 0)
+                    seleccionarId((Integer) tm.getValueAt(r, 0));
+            }
+        });
+        dlg.add(new JScrollPane(tabla));
+        dlg.setSize(560, 360);
+        dlg.setLocationRelativeTo(this);
+        dlg.setVisible(true);
+    }
+
+    // un codigo del escaner: si es un ID cargado se selecciona; si no (mal leido, o es un nombre) se
+    // selecciona el producto de nombre mas parecido
+    private void seleccionarCodigo(String codigo) {
+        try {
+            int id = Integer.parseInt(codigo);
+            if (model.indexOfId(id) >= 0) {
+                seleccionarId(id);
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // no es un ID; se busca por nombre
+        }
+        var parecidos = model.parecidos(codigo, 1, 0.4);
+        if (parecidos.length == 0) {
+            warn("El codigo " + codigo + " no coincide con ningun producto cargado."
+                    + (model.parecidosListos() ? "" : " (la busqueda de nombres parecidos aun se esta preparando)"));
             return;
         }
-        sorter.setRowFilter(RowFilter.regexFilter("(?i)" + Pattern.quote(q), 1)); // columna Nombre
+        seleccionarId(parecidos[0].id());
+    }
+
+    private void seleccionarId(int id) {
+        int fila = model.indexOfId(id);
+        if (fila < 0) {
+            warn("El producto " + id + " no esta cargado en la tabla.");
+            return;
+        }
+        if (!txtFilter.getText().isEmpty())
+            txtFilter.setText(""); // que el filtro no lo oculte
+        int vista = table.convertRowIndexToView(fila);
+        table.getSelectionModel().setSelectionInterval(vista, vista);
+        table.scrollRectToVisible(table.getCellRect(vista, 0, true));
     }
 
     // ======== Persistencia CSV ========
+    // el archivo se escribe en otro hilo desde una foto del modelo (ver CsvExporter): se puede seguir
+    // editando mientras se guarda y lo editado no entra al archivo. en ese mismo hilo, antes del archivo,
+    // SQLite se sincroniza con la misma foto: la base y el CSV quedan con el mismo inventario
     private void onGuardarCSV() {
+        if (!btnGuardar.isEnabled())
+            return; // ya se esta guardando (Ctrl+S no pasa por el boton)
         var fc = createCSVChooser("Guardar inventario");
         if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File f = ensureCsvExtension(fc.getSelectedFile());
-            try (var out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8))) {
-                out.println("id,nombre,cantidad,precio");
-                for (var p : model.all()) {
-                    out.printf("%d,%s,%d,%s%n",
-                            p.id,
-                            escapeCsv(p.nombre),
-                            p.cantidad,
-                            p.precio);
+            guardando(true);
+            // solo las filas que cambiaron desde el ultimo guardado (o la tabla completa despues de abrir un
+            // CSV); si algo falla se deshace todo y la tabla queda como estaba
+            var pendientes = model.tomarPendientes();
+            CsvExporter.exportar(this, f, pendientes.foto(), pendientes::guardar, r -> {
+                guardando(false);
+                if (r.sincronizado() == null)
+                    model.guardadoFallido(); // lo tomado no llego a la base
+                if (r.error() != null) {
+                    error("No se pudo guardar:\n" + r.error());
+                } else if (!r.cancelado()) {
+                    info("Guardado en:\n" + f.getAbsolutePath() + "\n" + r);
                 }
-                info("Guardado en:\n" + f.getAbsolutePath());
-
-                // Luego de guardar el CSV, sincronizamos SQLite con el modelo/CSV. ATT tu compi
-                // el BOR
-                syncModelToDatabase();
-
-            } catch (IOException ex) {
-                error("No se pudo guardar:\n" + ex.getMessage());
-            }
+            });
         }
     }
 
-    // Sincronizar todo el modelo con la base de datos
-    private void syncModelToDatabase() {
-        try {
-            // 1) Vaciar la tabla en la base de datos
-            Database.clearProducts();
-
-            // 2) Insertar de nuevo todo lo que hay en el modelo
-            for (var p : model.all()) {
-                Database.insertProductWithId(
-                        p.id,
-                        p.nombre,
-                        p.cantidad,
-                        p.precio.doubleValue());
-            }
-
-            System.out.println("Sincronización modelo → SQLite completada.");
-        } catch (Exception e) {
-            e.printStackTrace();
-            error("Error al sincronizar con la base de datos:\n" + e.getMessage());
-        }
+    private void guardando(boolean si) {
+        btnGuardar.setEnabled(!si);
+        miGuardar.setEnabled(!si);
     }
 
+    // la importacion corre en otro hilo con una ventana de avance (ver CsvImporter); si se cancela o falla,
+    // la tabla y la base quedan como estaban. se puede reemplazar todo o unir un archivo parcial
     private void onAbrirCSV() {
         var fc = createCSVChooser("Abrir inventario");
         if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File f = fc.getSelectedFile();
-            try (var br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
-                String line;
-                List<Producto> list = new ArrayList<>();
-                int maxId = 0;
-                boolean headerSkipped = false;
-                while ((line = br.readLine()) != null) {
-                    if (!headerSkipped) {
-                        headerSkipped = true;
-                        continue;
-                    }
-                    String[] parts = parseCsvLine(line, 4);
-                    int id = Integer.parseInt(parts[0]);
-                    String nombre = parts[1];
-                    int cantidad = Integer.parseInt(parts[2]);
-                    BigDecimal precio = new BigDecimal(parts[3]).setScale(2, RoundingMode.HALF_UP);
-                    list.add(new Producto(id, nombre, cantidad, precio));
-                    maxId = Math.max(maxId, id);
-                }
-
-                model.setAll(list);
+            var modo = (CsvImporter.Modo) JOptionPane.showInputDialog(this, "¿Cómo aplicar " + f.getName() + "?",
+                    "Importar CSV", JOptionPane.QUESTION_MESSAGE, null, CsvImporter.Modo.values(),
+                    CsvImporter.Modo.REEMPLAZAR);
+            if (modo == null)
+                return;
+            CsvImporter.importar(this, f, model, modo, r -> {
                 updateTotals();
-                info("Cargado desde:\n" + f.getAbsolutePath());
-
-                // Despues de cargar desde CSV, hacemos que SQLite quede igual que el archivo
-                syncModelToDatabase();
-
-            } catch (Exception ex) {
-                error("No se pudo abrir:\n" + ex.getMessage());
-            }
+                if (r.error() != null)
+                    error("No se pudo abrir:\n" + r.error());
+                else if (!r.cancelado())
+                    info("Cargado desde:\n" + f.getAbsolutePath() + "\n" + r);
+            });
         }
     }
 
@@ -694,45 +669,6 @@ public class UiInventario extends JFrame {
         return f.getName().toLowerCase().endsWith(".csv") ? f : new File(f.getParentFile(), f.getName() + ".csv");
     }
 
-    private static String escapeCsv(String s) {
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            s = s.replace("\"", "\"\"");
-            return "\"" + s + "\"";
-        }
-        return s;
-    }
-
-    private static String[] parseCsvLine(String line, int expected) {
-        List<String> out = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        boolean inQ = false;
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (inQ) {
-                if (c == '"') {
-                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                        sb.append('"');
-                        i++;
-                    } else
-                        inQ = false;
-                } else
-                    sb.append(c);
-            } else {
-                if (c == ',') {
-                    out.add(sb.toString());
-                    sb.setLength(0);
-                } else if (c == '"')
-                    inQ = true;
-                else
-                    sb.append(c);
-            }
-        }
-        out.add(sb.toString());
-        if (out.size() != expected)
-            throw new IllegalArgumentException("CSV inválido");
-        return out.toArray(String[]::new);
-    }
-
     // ======== Dialog crear/editar ========
     private Producto showProductoDialog(Producto base) {
         // Campo de texto para nombre (22 columnas)
@@ -748,7 +684,7 @@ public class UiInventario extends JFrame {
         // Si se esta editando un producto, cargar sus datos en los campos
         if (base != null) {
             txtNombre.setText(base.nombre);
-            txtPrecio.setText(base.precio.toPlainString());
+            txtPrecio.setText(base.precio().toPlainString());
         }
 
         // Panel del formulario con GridBagLayout
@@ -836,11 +772,9 @@ public class UiInventario extends JFrame {
 
     // ======== Totales ========
     private void updateTotals() {
-        int items = model.getRowCount();
-        BigDecimal total = new BigDecimal("0.00");
-        for (var p : model.all())
-            total = total.add(p.precio.multiply(new BigDecimal(p.cantidad)));
-        lblTotal.setText("Items: " + items + "  |  Total: $" + moneyFmt.format(total));
+        var t = model.totales(); // el modelo los lleva al dia, no se recorre la tabla
+        lblTotal.setText("Items: " + t.productos() + "  |  Unidades: " + t.unidades()
+                + "  |  Total: $" + moneyFmt.format(Producto.deCentavos(t.centavos())));
     }
 
     // ======== Zoom ========
@@ -1343,6 +1277,9 @@ public class UiInventario extends JFrame {
         bind(im, am, "open", KeyStroke.getKeyStroke(KeyEvent.VK_O, InputEvent.CTRL_DOWN_MASK), e -> onAbrirCSV());
         bind(im, am, "focusFilter", KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK),
                 e -> txtFilter.requestFocusInWindow());
+        bind(im, am, "searchCatalog",
+                KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
+                e -> onBuscarCatalogo());
         bind(im, am, "delete", KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), e -> onBorrar());
 
         // Zoom combos
@@ -0,0 +1,205 @@
+package app_java;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// cola de escritura con un solo hilo escritor. la interfaz (o cualquier otra capa) manda comandos y recibe un
+// CompletableFuture; el hilo junta los comandos que llegan dentro de una ventana de tiempo (o hasta un maximo)
+// y los guarda todos en una sola transaccion (group commit): un solo fsync para varios cambios y el hilo de
+// swing nunca espera al disco. si un comando falla solo se deshace ese comando (savepoint), no el lote
+final class WriteBehindQueue {
+
+    // un cambio a la base de datos; recibe la conexion de escritura ya dentro de la transaccion
+    @FunctionalInterface
+    interface Comando<T> {
+        T ejecutar(Connection conn) throws SQLException;
+    }
+
+    private record Pendiente<T>(Comando<T> comando, CompletableFuture<T> futuro, long encolado) {
+    }
+
+    private static volatile WriteBehindQueue instancia;
+
+    static WriteBehindQueue get() {
+        WriteBehindQueue q = instancia;
+        if (q == null) {
+            synchronized (WriteBehindQueue.class) {
+                q = instancia;
+                if (q == null) {
+                    q = new WriteBehindQueue(
+                            Configuracion.largo("inventario.escritura.ventana-ms", 5),
+                            Configuracion.entero("inventario.escritura.max-lote", 256));
+                    instancia = q;
+                }
+            }
+        }
+        return q;
+    }
+
+    private final LinkedBlockingQueue<Pendiente<?>> cola = new LinkedBlockingQueue<>();
+    private final long ventanaNanos;
+    private final int maxLote;
+    private final Thread hilo;
+    private volatile boolean cerrado;
+
+    // metricas
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong comandos = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+    private final AtomicLong commitNanosTotal = new AtomicLong();
+    private final AtomicLong commitNanosMax = new AtomicLong();
+    private final AtomicLong esperaNanosTotal = new AtomicLong(); // desde que se encola hasta que se confirma
+
+    private WriteBehindQueue(long ventanaMs, int maxLote) {
+        this.ventanaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ventanaMs));
+        this.maxLote = Math.max(1, maxLote);
+        this.hilo = new Thread(this::bucle, "escritor-sqlite");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+        // al salir se vacia la cola antes de que el pool cierre las conexiones (un solo gancho, en orden)
+        ConnectionPool.get().antesDeCerrar(this::cerrar);
+    }
+
+    // encola un cambio; el futuro se completa despues del commit (o con la excepcion si fallo)
+    <T> CompletableFuture<T> enviar(Comando<T> comando) {
+        var futuro = new CompletableFuture<T>();
+        if (cerrado) {
+            futuro.completeExceptionally(new IllegalStateException("La cola de escritura esta cerrada"));
+            return futuro;
+        }
+        cola.add(new Pendiente<>(comando, futuro, System.nanoTime()));
+        return futuro;
+    }
+
+    private void bucle() {
+        List<Pendiente<?>> lote = new ArrayList<>(maxLote);
+        while (!cerrado || !cola.isEmpty()) {
+            try {
+                Pendiente<?> primero = cola.poll(200, TimeUnit.MILLISECONDS);
+                if (primero == null)
+                    continue;
+                lote.add(primero);
+                // juntamos lo que llegue durante la ventana, sin pasar del maximo
+                long limite = System.nanoTime() + ventanaNanos;
+                while (lote.size() < maxLote) {
+                    long resta = limite - System.nanoTime();
+                    Pendiente<?> sig = resta > 0 ? cola.poll(resta, TimeUnit.NANOSECONDS) : cola.poll();
+                    if (sig == null)
+                        break;
+                    lote.add(sig);
+                }
+                confirmar(lote);
+            } catch (InterruptedException e) {
+                // nadie deberia interrumpir este hilo. la marca de interrupcion ya quedo limpia y asi se deja: si se volviera
+                // a marcar, el siguiente poll fallaria de inmediato y el hilo giraria sin parar. los comandos
+                // ya sacados de la cola se avisan para que nadie se quede esperando
+                for (var p : lote)
+                    p.futuro().completeExceptionally(e);
+            } catch (Throwable t) { // el hilo escritor no debe morir
+                for (var p : lote)
+                    p.futuro().completeExceptionally(t);
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    // ejecuta el lote en una transaccion; cada comando con su savepoint
+    private void confirmar(List<Pendiente<?>> lote) {
+        List<Object> resultados = new ArrayList<>(lote.size());
+        List<Throwable> errores = new ArrayList<>(lote.size());
+        long inicio = System.nanoTime();
+        try (var lease = ConnectionPool.get().escritura()) {
+            Connection conn = lease.conn();
+            conn.setAutoCommit(false);
+            try {
+                for (var p : lote) {
+                    Savepoint sp = conn.setSavepoint();
+                    try {
+                        resultados.add(p.comando().ejecutar(conn));
+                        errores.add(null);
+                        conn.releaseSavepoint(sp);
+                    } catch (SQLException | RuntimeException e) {
+                        conn.rollback(sp);
+                        resultados.add(null);
+                        errores.add(e);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException e) { // fallo el commit: ningun comando del lote quedo guardado
+            fallidos.addAndGet(lote.size());
+            for (var p : lote)
+                p.futuro().completeExceptionally(e);
+            return;
+        }
+        long fin = System.nanoTime();
+        long dur = fin - inicio;
+        lotes.incrementAndGet();
+        comandos.addAndGet(lote.size());
+        commitNanosTotal.addAndGet(dur);
+        commitNanosMax.accumulateAndGet(dur, Math::max);
+        Database.avisarCambio();
+
+        for (int i = 0; i < lote.size(); i++) {
+            var p = lote.get(i);
+            esperaNanosTotal.addAndGet(fin - p.encolado());
+            if (errores.get(i) != null) {
+                fallidos.incrementAndGet();
+                p.futuro().completeExceptionally(errores.get(i));
+            } else {
+                completar(p, resultados.get(i));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void completar(Pendiente<T> p, Object resultado) {
+        p.futuro().complete((T) resultado);
+    }
+
+    // deja de aceptar comandos y espera a que se guarde lo que ya estaba en la cola
+    void cerrar() {
+        cerrado = true;
+        try {
+            hilo.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Cola de escritura cerrada:\n" + metricas());
+    }
+
+    // ======== Metricas ========
+
+    record Metricas(int profundidad, long lotes, long comandos, long fallidos, double comandosPorLote,
+            double commitMsProm, double commitMsMax, double esperaMsProm) {
+        @Override
+        public String toString() {
+            return String.format("En cola: %d%nLotes: %d con %d comandos (%.1f por lote, %d fallidos)%n"
+                    + "Commit: %.3f ms prom, %.3f ms max%nEspera hasta confirmar: %.3f ms prom", profundidad, lotes,
+                    comandos, comandosPorLote, fallidos, commitMsProm, commitMsMax, esperaMsProm);
+        }
+    }
+
+    Metricas metricas() {
+        long l = lotes.get(), c = comandos.get();
+        return new Metricas(
+                cola.size(), l, c, fallidos.get(),
+                l == 0 ? 0 : (double) c / l,
+                l == 0 ? 0 : commitNanosTotal.get() / 1e6 / l,
+                commitNanosMax.get() / 1e6,
+                c == 0 ? 0 : esperaNanosTotal.get() / 1e6 / c);
+    }
+}